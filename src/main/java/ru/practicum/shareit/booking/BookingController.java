@@ -1,8 +1,12 @@
 package ru.practicum.shareit.booking;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -14,26 +18,38 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingInputDto;
 import ru.practicum.shareit.booking.exceptions.BookingAccessRestrictException;
 import ru.practicum.shareit.booking.exceptions.BookingBadPageParamsException;
+import ru.practicum.shareit.booking.exceptions.BookingConcurrentUpdateException;
 import ru.practicum.shareit.booking.exceptions.BookingIncompleteDataException;
 import ru.practicum.shareit.booking.exceptions.BookingNotFoundException;
+import ru.practicum.shareit.booking.exceptions.BookingOverlapException;
 import ru.practicum.shareit.booking.exceptions.BookingUnsupportedStatusException;
 import ru.practicum.shareit.booking.service.BookingService;
 import ru.practicum.shareit.item.exceptions.ItemNotFoundException;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
+import ru.practicum.shareit.util.PageCursor;
+import ru.practicum.shareit.util.ResultStream;
 
+import javax.validation.ConstraintViolationException;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
 import java.util.List;
 import java.util.Map;
 
 @RequiredArgsConstructor
 @Slf4j
+@Validated
 @RestController
 @RequestMapping(path = "/bookings")
 public class BookingController {
     private final BookingService bookingService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public BookingDto postBooking(@RequestHeader("X-Sharer-User-Id") int userId,
@@ -49,38 +65,76 @@ public class BookingController {
         return bookingService.approveBooking(bookingId, userId, approved);
     }
 
+    // решения сразу по нескольким бронированиям владельца,
+    // результат возвращается для каждого бронирования в порядке запроса;
+    // пустой элемент списка или решение без bookingId или approved - ответ 400
+    @PatchMapping("/batch")
+    public List<BookingDecisionResultDto> approveBookings(
+            @RequestHeader("X-Sharer-User-Id") int userId,
+            @RequestBody List<@NotNull @Valid BookingDecisionDto> decisions) {
+        log.info("PATCH /bookings/batch userId=" + userId + " size=" + decisions.size());
+        return bookingService.approveBookings(decisions, userId);
+    }
+
     @GetMapping("/{bookingId}")
     public BookingDto getBooking(@RequestHeader("X-Sharer-User-Id") int userId, @PathVariable int bookingId) {
         log.info("GET /bookings/" + bookingId + " userId=" + userId + " bookingId=" + bookingId);
         return bookingService.getBooking(bookingId, userId);
     }
 
+    // постраничный вывод: по номеру страницы (from, size) или по курсору (cursor, size),
+    // в курсорном режиме курсор следующей страницы возвращается в заголовке X-Next-Cursor
     @GetMapping
-    public List<BookingDto> getUserBookings(@RequestHeader("X-Sharer-User-Id") int userId,
-                                            @RequestParam(required = false) String state,
-                                            @RequestParam(required = false) Integer from,
-                                            @RequestParam(required = false) Integer size) {
+    public ResponseEntity<List<BookingDto>> getUserBookings(@RequestHeader("X-Sharer-User-Id") int userId,
+                                                            @RequestParam(required = false) String state,
+                                                            @RequestParam(required = false) Integer from,
+                                                            @RequestParam(required = false) Integer size,
+                                                            @RequestParam(required = false) String cursor) {
         log.info("GET /bookings/ userId=" + userId + " state=" + state);
 
         // параметр по умолчанию
         if (state == null)
             state = "ALL";
 
-        return bookingService.getUserBookings(userId, state, from, size);
+        return PageCursor.toResponse(bookingService.getUserBookings(userId, state, from, size, cursor),
+                cursor,
+                size,
+                booking -> new PageCursor(booking.getStart(), booking.getId()));
+    }
+
+    // потоковая выдача всего списка (Accept: application/x-ndjson):
+    // бронирования записываются в ответ по мере чтения из БД
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUserBookings(@RequestHeader("X-Sharer-User-Id") int userId,
+                                                                    @RequestParam(defaultValue = "ALL") String state) {
+        log.info("GET /bookings/ (ndjson) userId=" + userId + " state=" + state);
+        return ResultStream.toNdjsonResponse(bookingService.streamUserBookings(userId, state), objectMapper);
     }
 
     @GetMapping("/owner")
-    public List<BookingDto> getUserItemsBookings(@RequestHeader("X-Sharer-User-Id") int userId,
-                                                 @RequestParam(required = false) String state,
-                                                 @RequestParam(required = false) Integer from,
-                                                 @RequestParam(required = false) Integer size) {
+    public ResponseEntity<List<BookingDto>> getUserItemsBookings(@RequestHeader("X-Sharer-User-Id") int userId,
+                                                                 @RequestParam(required = false) String state,
+                                                                 @RequestParam(required = false) Integer from,
+                                                                 @RequestParam(required = false) Integer size,
+                                                                 @RequestParam(required = false) String cursor) {
         log.info("GET /bookings/owner userId=" + userId + " state=" + state);
 
         // параметр по умолчанию
         if (state == null)
             state = "ALL";
 
-        return bookingService.getUserItemsBookings(userId, state, from, size);
+        return PageCursor.toResponse(bookingService.getUserItemsBookings(userId, state, from, size, cursor),
+                cursor,
+                size,
+                booking -> new PageCursor(booking.getStart(), booking.getId()));
+    }
+
+    @GetMapping(path = "/owner", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUserItemsBookings(
+            @RequestHeader("X-Sharer-User-Id") int userId,
+            @RequestParam(defaultValue = "ALL") String state) {
+        log.info("GET /bookings/owner (ndjson) userId=" + userId + " state=" + state);
+        return ResultStream.toNdjsonResponse(bookingService.streamUserItemsBookings(userId, state), objectMapper);
     }
 
     @ExceptionHandler(BookingIncompleteDataException.class)
@@ -95,6 +149,12 @@ public class BookingController {
         return Map.of("error", e.getMessage());
     }
 
+    @ExceptionHandler(ConstraintViolationException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleConstraintViolation(ConstraintViolationException e) {
+        return Map.of("error", e.getMessage());
+    }
+
     @ExceptionHandler(BookingBadPageParamsException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleAccessRestriction(BookingBadPageParamsException e) {
@@ -107,6 +167,18 @@ public class BookingController {
         return Map.of("error", e.getMessage());
     }
 
+    @ExceptionHandler(BookingConcurrentUpdateException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Map<String, String> handleConcurrentUpdate(BookingConcurrentUpdateException e) {
+        return Map.of("error", e.getMessage());
+    }
+
+    @ExceptionHandler(BookingOverlapException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Map<String, String> handleOverlap(BookingOverlapException e) {
+        return Map.of("error", e.getMessage());
+    }
+
     @ExceptionHandler(BookingUnsupportedStatusException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleUnsupportedStatus(BookingUnsupportedStatusException e) {
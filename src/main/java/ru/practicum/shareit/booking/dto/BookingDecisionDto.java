@@ -0,0 +1,22 @@
+package ru.practicum.shareit.booking.dto;
+
+/*
+Dto объект для получения от владельца решения
+по одному бронированию (PATCH /bookings/batch)
+ */
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookingDecisionDto {
+    @NotNull
+    private Integer bookingId;
+    @NotNull
+    private Boolean approved;
+}
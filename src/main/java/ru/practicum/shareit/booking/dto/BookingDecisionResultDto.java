@@ -0,0 +1,20 @@
+package ru.practicum.shareit.booking.dto;
+
+/*
+Dto объект с результатом решения по одному бронированию
+(PATCH /bookings/batch): новый статус или текст ошибки
+ */
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.practicum.shareit.booking.model.BookingStatus;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookingDecisionResultDto {
+    private int bookingId;
+    private BookingStatus status;
+    private String error;
+}
@@ -5,6 +5,7 @@ Dto объект для бронирований.
 с сервера (отправки пользователю)
  */
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import ru.practicum.shareit.booking.model.BookingStatus;
@@ -13,6 +14,7 @@ import ru.practicum.shareit.item.dto.MinItemDto;
 import java.time.LocalDateTime;
 
 @Data
+@AllArgsConstructor
 @Builder
 public class BookingDto {
     private int id;
@@ -21,4 +23,12 @@ public class BookingDto {
     private MinItemDto item;
     private BookerDto booker;
     private BookingStatus status;
+
+    // конструктор для выборки dto напрямую из БД (см. BookingRepository)
+    public BookingDto(int id, LocalDateTime start, LocalDateTime end,
+                      int itemId, String itemName,
+                      int bookerId, String bookerName,
+                      BookingStatus status) {
+        this(id, start, end, new MinItemDto(itemId, itemName), new BookerDto(bookerId, bookerName), status);
+    }
 }
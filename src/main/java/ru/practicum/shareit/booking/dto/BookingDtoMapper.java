@@ -3,6 +3,7 @@ package ru.practicum.shareit.booking.dto;
 /*
 Класс-маппер для Booking:
 Booking -> BookingDto
+Booking -> MinBookingDto
 Booking <- BookingInputDto
  */
 
@@ -22,6 +23,12 @@ public class BookingDtoMapper {
                 .build();
     }
 
+    public static MinBookingDto toMinBookingDto(Booking booking) {
+        if (booking == null)
+            return null;
+        return new MinBookingDto(booking.getId(), booking.getBooker());
+    }
+
     public static Booking toBooking(BookingInputDto bookingDto, int bookerId) {
         return Booking.builder()
                 .start(bookingDto.getStart())
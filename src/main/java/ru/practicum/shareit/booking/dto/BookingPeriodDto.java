@@ -0,0 +1,21 @@
+package ru.practicum.shareit.booking.dto;
+
+/*
+Вспомогательный dto объект для
+периода бронирования в ItemAvailabilityDto
+ */
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookingPeriodDto {
+    private int bookingId;
+    private LocalDateTime start;
+    private LocalDateTime end;
+}
@@ -0,0 +1,24 @@
+package ru.practicum.shareit.booking.dto;
+
+/*
+Вспомогательный dto объект: бронирование вместе
+с владельцем вещи, выбирается напрямую из БД
+(см. BookingRepository.findWithOwner)
+ */
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.practicum.shareit.booking.model.BookingStatus;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class BookingWOwnerDto {
+    private int id;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private int itemId;
+    private int ownerId;
+    private BookingStatus status;
+}
@@ -7,10 +7,13 @@ import lombok.NoArgsConstructor;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import java.time.LocalDateTime;
 
 @Data
@@ -36,6 +39,15 @@ public class Booking {
     @Column(name = "booker_id", nullable = false)
     private int booker;
 
+    // в БД статус хранится строкой (столбец VARCHAR, условие исключения
+    // в schema-postgresql.sql проверяет status = 'APPROVED')
+    @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private BookingStatus status;
+
+    // статус меняется условным update (BookingRepository.updateStatus),
+    // который тоже увеличивает версию
+    @Version
+    @Column(nullable = false)
+    private int version;
 }
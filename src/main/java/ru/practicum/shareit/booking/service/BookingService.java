@@ -1,7 +1,10 @@
 package ru.practicum.shareit.booking.service;
 
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingInputDto;
+import ru.practicum.shareit.util.ResultStream;
 
 import java.util.List;
 
@@ -10,9 +13,20 @@ public interface BookingService {
 
     BookingDto approveBooking(int id, int userId, boolean isApproved);
 
+    // решения владельца сразу по нескольким бронированиям; ошибка по одному
+    // бронированию не мешает остальным и возвращается в его результате
+    List<BookingDecisionResultDto> approveBookings(List<BookingDecisionDto> decisions, int userId);
+
     BookingDto getBooking(int id, int userId);
 
-    List<BookingDto> getUserBookings(int userId, String state, Integer from, Integer size);
+    // cursor - курсор из заголовка X-Next-Cursor предыдущей страницы
+    // (пустая строка - первая страница), несовместим с from
+    List<BookingDto> getUserBookings(int userId, String state, Integer from, Integer size, String cursor);
+
+    List<BookingDto> getUserItemsBookings(int userId, String state, Integer from, Integer size, String cursor);
+
+    // все бронирования в состоянии state для потоковой выдачи
+    ResultStream<BookingDto> streamUserBookings(int userId, String state);
 
-    List<BookingDto> getUserItemsBookings(int userId, String state, Integer from, Integer size);
+    ResultStream<BookingDto> streamUserItemsBookings(int userId, String state);
 }
@@ -2,43 +2,67 @@ package ru.practicum.shareit.booking.service;
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingDtoMapper;
 import ru.practicum.shareit.booking.dto.BookingInputDto;
+import ru.practicum.shareit.booking.dto.BookingWOwnerDto;
 import ru.practicum.shareit.booking.exceptions.BookingAccessRestrictException;
 import ru.practicum.shareit.booking.exceptions.BookingBadPageParamsException;
+import ru.practicum.shareit.booking.exceptions.BookingConcurrentUpdateException;
 import ru.practicum.shareit.booking.exceptions.BookingIncompleteDataException;
 import ru.practicum.shareit.booking.exceptions.BookingNotFoundException;
+import ru.practicum.shareit.booking.exceptions.BookingOverlapException;
 import ru.practicum.shareit.booking.exceptions.BookingUnsupportedStatusException;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.storage.BookingAvailabilityStorage;
 import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.booking.storage.BookingStateFilter;
 import ru.practicum.shareit.item.exceptions.ItemNotFoundException;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.storage.ItemRepository;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
 import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserIdIndex;
 import ru.practicum.shareit.user.storage.UserRepository;
+import ru.practicum.shareit.util.PageParams;
+import ru.practicum.shareit.util.ResultStream;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RequiredArgsConstructor
 @Getter
 @Component
 public class BookingServiceImpl implements BookingService {
+    // ограничение исключения из schema-postgresql.sql
+    private static final String OVERLAP_CONSTRAINT = "excl_bookings_item_period";
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+
     private final BookingRepository bookingRepository;
     private final UserRepository userRepository;
+    private final UserIdIndex userIdIndex;
     private final ItemRepository itemRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BookingAvailabilityStorage bookingAvailabilityStorage;
 
     @Override
     public BookingDto addBooking(BookingInputDto bookingDto, int userId) {
@@ -66,8 +90,55 @@ public class BookingServiceImpl implements BookingService {
             throw new BookingAccessRestrictException("Вещь " + tempItem.get().getId() + " недоступна для бронирования");
 
         Booking result = BookingDtoMapper.toBooking(bookingDto, userId);
-        return BookingDtoMapper.toBookingDto(bookingRepository.save(result),
-                tempItem.get().getName(), tempUser.get().getName());
+        Booking saved = inOverlapTransaction(() -> {
+            checkOverlap(result);
+            return bookingRepository.save(result);
+        });
+        bookingAvailabilityStorage.onSave(saved);
+        return BookingDtoMapper.toBookingDto(saved, tempItem.get().getName(), tempUser.get().getName());
+    }
+
+    // решение принимается только по ожидающему бронированию
+    private void checkWaiting(BookingStatus status) {
+        String error = statusError(status);
+        if (error != null)
+            throw new BookingIncompleteDataException(error);
+    }
+
+    // почему решение по бронированию в этом статусе принять нельзя, или null
+    private static String statusError(BookingStatus status) {
+        switch (status) {
+            case APPROVED:
+                return "Бронирование уже одобрено";
+            case REJECTED:
+                return "Бронирование уже отклонено";
+            case CANCELED:
+                return "Бронирование отменено";
+            default:
+                return null;
+        }
+    }
+
+    // проверка пересечения с одобренными бронированиями вещи.
+    // Вызывается в транзакции: строка вещи блокируется до ее конца,
+    // поэтому между проверкой и сохранением одобренное бронирование
+    // той же вещи появиться не может. В PostgreSQL то же условие
+    // дополнительно проверяет ограничение excl_bookings_item_period
+    private <T> T inOverlapTransaction(Supplier<T> action) {
+        try {
+            return transactionTemplate.execute(status -> action.get());
+        } catch (DataIntegrityViolationException e) {
+            if (e.getMessage() != null && e.getMessage().contains(OVERLAP_CONSTRAINT))
+                throw new BookingOverlapException("Вещь уже забронирована на эти даты");
+            throw e;
+        }
+    }
+
+    private void checkOverlap(Booking booking) {
+        itemRepository.lockById(booking.getItem());
+        if (bookingRepository.existsByItemAndStatusAndStartBeforeAndEndAfterAndIdNot(booking.getItem(),
+                BookingStatus.APPROVED, booking.getEnd(), booking.getStart(), booking.getId()))
+            throw new BookingOverlapException("Вещь " + booking.getItem() + " уже забронирована на эти даты");
     }
 
     @Override
@@ -81,210 +152,306 @@ public class BookingServiceImpl implements BookingService {
         if (tempItem.get().getOwner() != userId)
             throw new UserNotFoundException("Только владелец вещи может одобрить бронирование");
 
+        checkWaiting(result.get().getStatus());
+
+        // решение принимается один раз: статус меняется условным update
+        // только из WAITING, поэтому повторный или одновременный запрос
+        // ничего не изменит и получит ту же ошибку, что и при проверке выше
+        BookingStatus status = isApproved ? BookingStatus.APPROVED : BookingStatus.REJECTED;
+        int updated = inOverlapTransaction(() -> {
+            if (isApproved)
+                checkOverlap(result.get());
+            return bookingRepository.updateStatus(id, BookingStatus.WAITING, status);
+        });
+        if (updated == 0) {
+            checkWaiting(bookingRepository.findStatusById(id)
+                    .orElseThrow(() -> new BookingNotFoundException("Бронирование " + id + " не найдено")));
+            throw new BookingIncompleteDataException("Статус бронирования " + id + " уже изменен");
+        }
 
-        if (isApproved && result.get().getStatus().equals(BookingStatus.APPROVED))
-            throw new BookingIncompleteDataException("Бронирование уже одобрено");
-        else if (isApproved)
-            result.get().setStatus(BookingStatus.APPROVED);
-        else if (result.get().getStatus().equals(BookingStatus.REJECTED))
-            throw new BookingIncompleteDataException("Бронирование уже отклонено");
-        else
-            result.get().setStatus(BookingStatus.REJECTED);
+        result.get().setStatus(status);
+        bookingAvailabilityStorage.onSave(result.get());
 
-        // проверки на пользователя не нужны,
-        // т.к. его наличие гарантируется существованием вещи (у каждой есть владелец)
-        Optional<User> tempUser = userRepository.findById(userId);
-        return BookingDtoMapper.toBookingDto(bookingRepository.save(result.get()),
-                tempItem.get().getName(),
-                tempUser.get().getName());
+        // имя автора бронирования подтягивается тем же запросом, что и название вещи
+        return bookingRepository.findBookingForUser(id, userId).get();
     }
 
+    // Пакет обрабатывается в одной транзакции: владельцы и статусы читаются
+    // одним запросом с соединением, вещи одобряемых бронирований блокируются
+    // одним запросом, а статусы меняются двумя update (одобрение и отказ).
+    // Статусы прочитаны до блокировки, поэтому update условный; если он изменил
+    // не все строки, пакет параллельно менялся, транзакция откатывается
+    // и пакет разбирается заново
     @Override
-    public BookingDto getBooking(int id, int userId) {
-        Optional<Booking> result = bookingRepository.findById(id);
-        if (result.isEmpty())
-            throw new BookingNotFoundException("Бронирование " + id + " не найдено");
+    public List<BookingDecisionResultDto> approveBookings(List<BookingDecisionDto> decisions, int userId) {
+        if (decisions == null || decisions.isEmpty())
+            return new ArrayList<>();
+        if (decisions.size() > MAX_BATCH_SIZE)
+            throw new BookingIncompleteDataException("За один запрос можно обработать не больше "
+                    + MAX_BATCH_SIZE + " бронирований");
+
+        for (int attempt = 1; ; attempt++) {
+            List<Booking> approved = new ArrayList<>();
+            try {
+                List<BookingDecisionResultDto> results
+                        = inOverlapTransaction(() -> decide(decisions, userId, approved));
+                approved.forEach(bookingAvailabilityStorage::onSave);
+                return results;
+            } catch (BookingConcurrentUpdateException e) {
+                if (attempt == MAX_BATCH_ATTEMPTS)
+                    throw e;
+            }
+        }
+    }
 
-        Optional<Item> tempItem = itemRepository.findById(result.get().getItem());
-        if (tempItem.isEmpty())
-            throw new UserNotFoundException("Пользователь " + userId + " не найден");
+    private List<BookingDecisionResultDto> decide(List<BookingDecisionDto> decisions, int userId,
+                                                  List<Booking> approved) {
+        Map<Integer, BookingWOwnerDto> bookings = bookingRepository.findWithOwner(decisions.stream()
+                        .map(BookingDecisionDto::getBookingId)
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(BookingWOwnerDto::getId, Function.identity()));
+
+        // ошибки проверок, не требующих блокировок; null - решение можно применить
+        String[] errors = new String[decisions.size()];
+        Set<Integer> seen = new HashSet<>();
+        Set<Integer> lockedItems = new TreeSet<>();
+        for (int i = 0; i < decisions.size(); i++) {
+            BookingDecisionDto decision = decisions.get(i);
+            BookingWOwnerDto booking = bookings.get(decision.getBookingId());
+            if (booking == null)
+                errors[i] = "Бронирование " + decision.getBookingId() + " не найдено";
+            else if (booking.getOwnerId() != userId)
+                errors[i] = "Только владелец вещи может одобрить бронирование";
+            else if (!seen.add(booking.getId()))
+                errors[i] = "Бронирование " + booking.getId() + " указано в запросе повторно";
+            else
+                errors[i] = statusError(booking.getStatus());
+
+            if (errors[i] == null && decision.getApproved())
+                lockedItems.add(booking.getItemId());
+        }
 
-        if (result.get().getBooker() != userId && tempItem.get().getOwner() != userId)
-            throw new UserNotFoundException("Получить информацию о бронировании могут лишь авторы и владельцы вещей");
+        // одобренные бронирования заблокированных вещей, с которыми могут
+        // пересечься одобряемые; бронирования из пакета добавляются к ним по порядку
+        Map<Integer, List<Booking>> busy = new HashMap<>();
+        if (!lockedItems.isEmpty()) {
+            itemRepository.lockAllById(lockedItems);
+            LocalDateTime minStart = null;
+            LocalDateTime maxEnd = null;
+            for (int i = 0; i < decisions.size(); i++) {
+                if (errors[i] != null || !decisions.get(i).getApproved())
+                    continue;
+                BookingWOwnerDto booking = bookings.get(decisions.get(i).getBookingId());
+                if (minStart == null || booking.getStart().isBefore(minStart))
+                    minStart = booking.getStart();
+                if (maxEnd == null || booking.getEnd().isAfter(maxEnd))
+                    maxEnd = booking.getEnd();
+            }
+            bookingRepository.findByItemInAndStatusAndStartBeforeAndEndAfter(lockedItems, BookingStatus.APPROVED,
+                            maxEnd, minStart)
+                    .forEach(booking -> busy.computeIfAbsent(booking.getItem(), item -> new ArrayList<>()).add(booking));
+        }
 
-        Optional<User> tempUser = userRepository.findById(userId);
-        return BookingDtoMapper.toBookingDto(result.get(), tempItem.get().getName(), tempUser.get().getName());
+        List<Integer> toApprove = new ArrayList<>();
+        List<Integer> toReject = new ArrayList<>();
+        List<BookingDecisionResultDto> results = new ArrayList<>();
+        for (int i = 0; i < decisions.size(); i++) {
+            BookingDecisionDto decision = decisions.get(i);
+            BookingWOwnerDto booking = bookings.get(decision.getBookingId());
+            if (errors[i] == null && decision.getApproved()) {
+                List<Booking> itemBusy = busy.computeIfAbsent(booking.getItemId(), item -> new ArrayList<>());
+                if (itemBusy.stream().anyMatch(other -> other.getStart().isBefore(booking.getEnd())
+                        && booking.getStart().isBefore(other.getEnd())))
+                    errors[i] = "Вещь " + booking.getItemId() + " уже забронирована на эти даты";
+                else {
+                    Booking result = Booking.builder()
+                            .id(booking.getId())
+                            .start(booking.getStart())
+                            .end(booking.getEnd())
+                            .item(booking.getItemId())
+                            .status(BookingStatus.APPROVED)
+                            .build();
+                    itemBusy.add(result);
+                    approved.add(result);
+                    toApprove.add(booking.getId());
+                }
+            } else if (errors[i] == null)
+                toReject.add(booking.getId());
+
+            if (errors[i] != null)
+                results.add(new BookingDecisionResultDto(decision.getBookingId(), null, errors[i]));
+            else
+                results.add(new BookingDecisionResultDto(decision.getBookingId(),
+                        decision.getApproved() ? BookingStatus.APPROVED : BookingStatus.REJECTED, null));
+        }
+
+        int updated = 0;
+        if (!toApprove.isEmpty())
+            updated += bookingRepository.updateStatuses(toApprove, BookingStatus.WAITING, BookingStatus.APPROVED);
+        if (!toReject.isEmpty())
+            updated += bookingRepository.updateStatuses(toReject, BookingStatus.WAITING, BookingStatus.REJECTED);
+        if (updated != toApprove.size() + toReject.size())
+            throw new BookingConcurrentUpdateException("Бронирования изменены другим запросом, повторите позже");
+
+        return results;
     }
 
     @Override
-    public List<BookingDto> getUserBookings(int userId, String state, Integer from, Integer size) {
-        Optional<User> tempUser = userRepository.findById(userId);
-        if (tempUser.isEmpty())
-            throw new UserNotFoundException("Пользователь " + userId + " не найден");
+    public BookingDto getBooking(int id, int userId) {
+        Optional<BookingDto> result = bookingRepository.findBookingForUser(id, userId);
+        if (result.isPresent())
+            return result.get();
 
-        List<Booking> tempBookingList;
+        if (!bookingRepository.existsById(id))
+            throw new BookingNotFoundException("Бронирование " + id + " не найдено");
+        throw new UserNotFoundException("Получить информацию о бронировании могут лишь авторы и владельцы вещей");
+    }
 
-        if (from == null && size == null)
-            tempBookingList = bookingRepository.findByBookerOrderByStartDesc(userId);
-        else if (from == null || size == null || from < 0 || size <= 0)
-            throw new BookingBadPageParamsException("Параметры: from=" + from + " size=" + size);
-        else {
-            Sort sortByStart = Sort.by(Sort.Direction.DESC, "start");
-            Pageable page = PageRequest.of(from, size, sortByStart);
-            Page<Booking> bookingPage = bookingRepository.findAll(page);
+    @Override
+    public List<BookingDto> getUserBookings(int userId, String state, Integer from, Integer size, String cursor) {
+        if (!userIdIndex.exists(userId))
+            throw new UserNotFoundException("Пользователь " + userId + " не найден");
 
-            tempBookingList = bookingPage.get()
-                    .filter(booking -> booking.getBooker() == userId)
-                    .collect(Collectors.toList());
+        PageParams params = toPageParams(from, size, cursor);
+        Pageable page = params.toPageable();
+
+        // выборка по нужному состоянию выполняется на стороне БД,
+        // данные о вещи и авторе приходят тем же запросом
+        LocalDateTime now = LocalDateTime.now();
+        if (params.hasCursor()) {
+            LocalDateTime afterStart = params.getCursor().getTime();
+            int afterId = params.getCursor().getId();
+            switch (state) {
+                case "ALL":
+                    return bookingRepository.findBookerBookingsAfter(userId, afterStart, afterId, page);
+                case "CURRENT":
+                    return bookingRepository.findBookerCurrentBookingsAfter(userId, now, afterStart, afterId, page);
+                case "PAST":
+                    return bookingRepository.findBookerPastBookingsAfter(userId, now, afterStart, afterId, page);
+                case "FUTURE":
+                    return bookingRepository.findBookerFutureBookingsAfter(userId, now, afterStart, afterId, page);
+                case "WAITING":
+                    return bookingRepository.findBookerBookingsByStatusAfter(userId, BookingStatus.WAITING,
+                            afterStart, afterId, page);
+                case "REJECTED":
+                    return bookingRepository.findBookerBookingsByStatusAfter(userId, BookingStatus.REJECTED,
+                            afterStart, afterId, page);
+                default:
+                    throw new BookingUnsupportedStatusException("Unknown state: UNSUPPORTED_STATUS");
+            }
         }
 
-        // выборка по нужному состоянию.
-        // т.к. в общем случае порядок бронирований (и их количество для одной вещи) заранее не известен,
-        // то для заполнения данных для каждого dto объекта приходится запрашивать по одной вещи
-        List<BookingDto> result = new ArrayList<>();
         switch (state) {
             case "ALL":
-                for (Booking booking : tempBookingList) {
-                    Item tempItem = itemRepository.findById(booking.getItem()).get();
-                    result.add(BookingDtoMapper.toBookingDto(booking, tempItem.getName(), tempUser.get().getName()));
-                }
-                break;
+                return bookingRepository.findBookerBookings(userId, page);
             case "CURRENT":
-                for (Booking booking : tempBookingList) {
-                    if (booking.getStart().isBefore(LocalDateTime.now())
-                            && booking.getEnd().isAfter(LocalDateTime.now())) {
-                        Item tempItem = itemRepository.findById(booking.getItem()).get();
-                        result.add(BookingDtoMapper.toBookingDto(booking, tempItem.getName(), tempUser.get().getName()));
-                    }
-                }
-                break;
+                return bookingRepository.findBookerCurrentBookings(userId, now, page);
             case "PAST":
-                for (Booking booking : tempBookingList) {
-                    if (booking.getEnd().isBefore(LocalDateTime.now())) {
-                        Item tempItem = itemRepository.findById(booking.getItem()).get();
-                        result.add(BookingDtoMapper.toBookingDto(booking, tempItem.getName(), tempUser.get().getName()));
-                    }
-                }
-                break;
+                return bookingRepository.findBookerPastBookings(userId, now, page);
             case "FUTURE":
-                for (Booking booking : tempBookingList) {
-                    if (booking.getStart().isAfter(LocalDateTime.now())) {
-                        Item tempItem = itemRepository.findById(booking.getItem()).get();
-                        result.add(BookingDtoMapper.toBookingDto(booking, tempItem.getName(), tempUser.get().getName()));
-                    }
-                }
-                break;
+                return bookingRepository.findBookerFutureBookings(userId, now, page);
             case "WAITING":
-                for (Booking booking : tempBookingList) {
-                    if (booking.getStatus().equals(BookingStatus.WAITING)) {
-                        Item tempItem = itemRepository.findById(booking.getItem()).get();
-                        result.add(BookingDtoMapper.toBookingDto(booking, tempItem.getName(), tempUser.get().getName()));
-                    }
-                }
-                break;
+                return bookingRepository.findBookerBookingsByStatus(userId, BookingStatus.WAITING, page);
             case "REJECTED":
-                for (Booking booking : tempBookingList) {
-                    if (booking.getStatus().equals(BookingStatus.REJECTED)) {
-                        Item tempItem = itemRepository.findById(booking.getItem()).get();
-                        result.add(BookingDtoMapper.toBookingDto(booking, tempItem.getName(), tempUser.get().getName()));
-                    }
-                }
-                break;
+                return bookingRepository.findBookerBookingsByStatus(userId, BookingStatus.REJECTED, page);
             default:
                 throw new BookingUnsupportedStatusException("Unknown state: UNSUPPORTED_STATUS");
         }
-
-        return result;
     }
 
     @Override
-    public List<BookingDto> getUserItemsBookings(int userId, String state, Integer from, Integer size) {
-        Optional<User> tempUser = userRepository.findById(userId);
-        if (tempUser.isEmpty())
+    public List<BookingDto> getUserItemsBookings(int userId, String state, Integer from, Integer size, String cursor) {
+        if (!userIdIndex.exists(userId))
             throw new UserNotFoundException("Пользователь " + userId + " не найден");
-        if (itemRepository.countByOwner(userId) == 0)
+        if (!itemRepository.existsByOwner(userId))
             throw new ItemNotFoundException("У пользователя " + userId + " нет вещей");
 
-
-        List<Item> tempItemList = itemRepository.findByOwner(userId);
-
-        // список идентификаторов вещей пользователя
-        List<Integer> itemIds = new ArrayList<>();
-        for (Item item : tempItemList) {
-            itemIds.add(item.getId());
+        PageParams params = toPageParams(from, size, cursor);
+        Pageable page = params.toPageable();
+
+        LocalDateTime now = LocalDateTime.now();
+        if (params.hasCursor()) {
+            LocalDateTime afterStart = params.getCursor().getTime();
+            int afterId = params.getCursor().getId();
+            switch (state) {
+                case "ALL":
+                    return bookingRepository.findOwnerBookingsAfter(userId, afterStart, afterId, page);
+                case "CURRENT":
+                    return bookingRepository.findOwnerCurrentBookingsAfter(userId, now, afterStart, afterId, page);
+                case "PAST":
+                    return bookingRepository.findOwnerPastBookingsAfter(userId, now, afterStart, afterId, page);
+                case "FUTURE":
+                    return bookingRepository.findOwnerFutureBookingsAfter(userId, now, afterStart, afterId, page);
+                case "WAITING":
+                    return bookingRepository.findOwnerBookingsByStatusAfter(userId, BookingStatus.WAITING,
+                            afterStart, afterId, page);
+                case "REJECTED":
+                    return bookingRepository.findOwnerBookingsByStatusAfter(userId, BookingStatus.REJECTED,
+                            afterStart, afterId, page);
+                default:
+                    throw new BookingUnsupportedStatusException("Unknown state: UNSUPPORTED_STATUS");
+            }
         }
 
-        List<Booking> tempBookingList;
-
-        if (from == null && size == null)
-            tempBookingList = bookingRepository.findByItemInOrderByStartDesc(itemIds);
-        else if (from == null || size == null || from < 0 || size <= 0)
-            throw new BookingBadPageParamsException("Параметры: from=" + from + " size=" + size);
-        else {
-            Sort sortByStart = Sort.by(Sort.Direction.DESC, "start");
-            Pageable page = PageRequest.of(from, size, sortByStart);
-            Page<Booking> bookingPage = bookingRepository.findAll(page);
-
-            HashSet<Integer> tempIds = new HashSet<>(itemIds);
-
-            tempBookingList = bookingPage.get()
-                    .filter(booking -> tempIds.contains(booking.getItem()))
-                    .collect(Collectors.toList());
-        }
-
-        List<BookingDto> result = new ArrayList<>();
         switch (state) {
             case "ALL":
-                for (Booking booking : tempBookingList) {
-                    Item tempItem = itemRepository.findById(booking.getItem()).get();
-                    result.add(BookingDtoMapper.toBookingDto(booking, tempItem.getName(), tempUser.get().getName()));
-                }
-                break;
+                return bookingRepository.findOwnerBookings(userId, page);
             case "CURRENT":
-                for (Booking booking : tempBookingList) {
-                    if (booking.getStart().isBefore(LocalDateTime.now())
-                            && booking.getEnd().isAfter(LocalDateTime.now())) {
-                        Item tempItem = itemRepository.findById(booking.getItem()).get();
-                        result.add(BookingDtoMapper.toBookingDto(booking, tempItem.getName(), tempUser.get().getName()));
-                    }
-                }
-                break;
+                return bookingRepository.findOwnerCurrentBookings(userId, now, page);
             case "PAST":
-                for (Booking booking : tempBookingList) {
-                    if (booking.getEnd().isBefore(LocalDateTime.now())) {
-                        Item tempItem = itemRepository.findById(booking.getItem()).get();
-                        result.add(BookingDtoMapper.toBookingDto(booking, tempItem.getName(), tempUser.get().getName()));
-                    }
-                }
-                break;
+                return bookingRepository.findOwnerPastBookings(userId, now, page);
             case "FUTURE":
-                for (Booking booking : tempBookingList) {
-                    if (booking.getStart().isAfter(LocalDateTime.now())) {
-                        Item tempItem = itemRepository.findById(booking.getItem()).get();
-                        result.add(BookingDtoMapper.toBookingDto(booking, tempItem.getName(), tempUser.get().getName()));
-                    }
-                }
-                break;
+                return bookingRepository.findOwnerFutureBookings(userId, now, page);
             case "WAITING":
-                for (Booking booking : tempBookingList) {
-                    if (booking.getStatus().equals(BookingStatus.WAITING)) {
-                        Item tempItem = itemRepository.findById(booking.getItem()).get();
-                        result.add(BookingDtoMapper.toBookingDto(booking, tempItem.getName(), tempUser.get().getName()));
-                    }
-                }
-                break;
+                return bookingRepository.findOwnerBookingsByStatus(userId, BookingStatus.WAITING, page);
             case "REJECTED":
-                for (Booking booking : tempBookingList) {
-                    if (booking.getStatus().equals(BookingStatus.REJECTED)) {
-                        Item tempItem = itemRepository.findById(booking.getItem()).get();
-                        result.add(BookingDtoMapper.toBookingDto(booking, tempItem.getName(), tempUser.get().getName()));
-                    }
-                }
-                break;
+                return bookingRepository.findOwnerBookingsByStatus(userId, BookingStatus.REJECTED, page);
             default:
                 throw new BookingUnsupportedStatusException("Unknown state: UNSUPPORTED_STATUS");
         }
+    }
+
+    // проверки выполняются сразу, бронирования читаются из БД при обходе потока
+    @Override
+    public ResultStream<BookingDto> streamUserBookings(int userId, String state) {
+        if (!userIdIndex.exists(userId))
+            throw new UserNotFoundException("Пользователь " + userId + " не найден");
+        BookingStateFilter filter = toStateFilter(state);
+
+        return action -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<BookingDto> bookings = bookingRepository.streamBookerBookings(userId, filter)) {
+                bookings.forEach(action);
+            }
+        });
+    }
+
+    @Override
+    public ResultStream<BookingDto> streamUserItemsBookings(int userId, String state) {
+        if (!userIdIndex.exists(userId))
+            throw new UserNotFoundException("Пользователь " + userId + " не найден");
+        if (!itemRepository.existsByOwner(userId))
+            throw new ItemNotFoundException("У пользователя " + userId + " нет вещей");
+        BookingStateFilter filter = toStateFilter(state);
+
+        return action -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<BookingDto> bookings = bookingRepository.streamOwnerBookings(userId, filter)) {
+                bookings.forEach(action);
+            }
+        });
+    }
+
+    private BookingStateFilter toStateFilter(String state) {
+        BookingStateFilter filter = BookingStateFilter.of(state, LocalDateTime.now());
+        if (filter == null)
+            throw new BookingUnsupportedStatusException("Unknown state: UNSUPPORTED_STATUS");
+        return filter;
+    }
 
-        return result;
+    // курсор списка бронирований содержит время начала последнего бронирования
+    private PageParams toPageParams(Integer from, Integer size, String cursor) {
+        PageParams params = PageParams.of(from, size, cursor, BookingBadPageParamsException::new);
+        if (params.hasCursor() && params.getCursor().getTime() == null)
+            throw new BookingBadPageParamsException("Некорректный курсор: " + cursor);
+        return params;
     }
 }
@@ -0,0 +1,244 @@
+package ru.practicum.shareit.booking.storage;
+
+/*
+Занятость вещей по одобренным бронированиям (/items/{id}/availability).
+Для каждой вещи хранятся отсортированные по началу интервалы [start, end)
+ее одобренных бронирований. Одобренные бронирования одной вещи
+не пересекаются (см. BookingServiceImpl.checkOverlap), поэтому концы
+интервалов тоже отсортированы и пересечение с запрошенным периодом
+находится бинарным поиском. В памяти только бронирования, не закончившиеся
+к моменту загрузки: хранилище заполняется из БД при старте, обновляется
+через onSave из BookingServiceImpl и периодически перезагружается
+(shareit.availability.reload-interval), при этом закончившиеся интервалы
+отбрасываются, а изменения с других экземпляров приложения подтягиваются.
+Периоды, начинающиеся раньше момента загрузки, читаются из БД
+ */
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.dto.BookingPeriodDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+@Slf4j
+@Component
+@EnableScheduling
+public class BookingAvailabilityStorage {
+    private static final int BATCH_SIZE = 500;
+
+    private final BookingRepository bookingRepository;
+
+    // id вещи -> интервалы ее одобренных бронирований
+    private Map<Integer, Intervals> intervals = new HashMap<>();
+    // id бронирования -> id вещи, чтобы находить интервал при смене статуса
+    private Map<Integer, Integer> itemByBooking = new HashMap<>();
+    // в памяти все одобренные бронирования, закончившиеся после loadedFrom;
+    // до первой загрузки все запросы идут в БД
+    private LocalDateTime loadedFrom = LocalDateTime.MAX;
+    // бронирования, сохраненные во время перезагрузки; применяются к новому
+    // состоянию, чтобы не потерять изменения, прочитанные из БД раньше них
+    private List<Booking> pending;
+
+    // загрузка идет без блокировки, чтобы не задерживать запросы занятости,
+    // затем новое состояние подменяет старое
+    @PostConstruct
+    @Scheduled(initialDelayString = "${shareit.availability.reload-interval:PT10M}",
+            fixedDelayString = "${shareit.availability.reload-interval:PT10M}")
+    public void rebuild() {
+        synchronized (this) {
+            pending = new ArrayList<>();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Map<Integer, Intervals> freshIntervals = new HashMap<>();
+        Map<Integer, Integer> freshItemByBooking = new HashMap<>();
+        int lastId = 0;
+        List<Booking> batch;
+        do {
+            batch = bookingRepository.findByStatusAndEndAfterAndIdGreaterThanOrderById(BookingStatus.APPROVED, now,
+                    lastId, PageRequest.of(0, BATCH_SIZE));
+            for (Booking booking : batch) {
+                put(freshIntervals, freshItemByBooking, booking);
+                lastId = booking.getId();
+            }
+        } while (batch.size() == BATCH_SIZE);
+
+        synchronized (this) {
+            for (Booking booking : pending) {
+                put(freshIntervals, freshItemByBooking, booking);
+            }
+            pending = null;
+            intervals = freshIntervals;
+            itemByBooking = freshItemByBooking;
+            loadedFrom = now;
+        }
+        log.info("Занятость вещей загружена: бронирований {}, вещей {}", freshItemByBooking.size(),
+                freshIntervals.size());
+    }
+
+    // одобренное бронирование занимает интервал, остальные его освобождают
+    public synchronized void onSave(Booking booking) {
+        put(intervals, itemByBooking, booking);
+        if (pending != null)
+            pending.add(booking);
+    }
+
+    // одобренные бронирования вещи, пересекающиеся с [start, end), по возрастанию начала
+    public List<BookingPeriodDto> findBusy(int itemId, LocalDateTime start, LocalDateTime end) {
+        return findBusy(List.of(itemId), start, end).getOrDefault(itemId, Collections.emptyList());
+    }
+
+    // то же сразу для нескольких вещей: id вещи -> занятые периоды,
+    // вещей без пересечений в результате нет
+    public Map<Integer, List<BookingPeriodDto>> findBusy(Collection<Integer> itemIds, LocalDateTime start,
+                                                         LocalDateTime end) {
+        if (itemIds.isEmpty())
+            return Collections.emptyMap();
+
+        synchronized (this) {
+            // пересекающийся с периодом интервал заканчивается после start,
+            // значит он в памяти, если start не раньше момента загрузки
+            if (!start.isBefore(loadedFrom)) {
+                Map<Integer, List<BookingPeriodDto>> result = new HashMap<>();
+                for (int itemId : itemIds) {
+                    Intervals list = intervals.get(itemId);
+                    if (list == null)
+                        continue;
+                    List<BookingPeriodDto> busy = list.overlapping(start, end);
+                    if (!busy.isEmpty())
+                        result.put(itemId, busy);
+                }
+                return result;
+            }
+        }
+
+        Map<Integer, List<BookingPeriodDto>> result = new HashMap<>();
+        bookingRepository.findByItemInAndStatusAndStartBeforeAndEndAfter(itemIds, BookingStatus.APPROVED, end, start)
+                .stream()
+                .sorted(Comparator.comparing(Booking::getStart).thenComparing(Booking::getId))
+                .forEach(booking -> result.computeIfAbsent(booking.getItem(), item -> new ArrayList<>())
+                        .add(new BookingPeriodDto(booking.getId(), booking.getStart(), booking.getEnd())));
+        return result;
+    }
+
+    public synchronized int size() {
+        return itemByBooking.size();
+    }
+
+    private static void put(Map<Integer, Intervals> intervals, Map<Integer, Integer> itemByBooking,
+                            Booking booking) {
+        delete(intervals, itemByBooking, booking.getId());
+        if (booking.getStatus() != BookingStatus.APPROVED)
+            return;
+
+        intervals.computeIfAbsent(booking.getItem(), item -> new Intervals())
+                .insert(booking.getStart(), booking.getEnd(), booking.getId());
+        itemByBooking.put(booking.getId(), booking.getItem());
+    }
+
+    private static void delete(Map<Integer, Intervals> intervals, Map<Integer, Integer> itemByBooking,
+                               int bookingId) {
+        Integer itemId = itemByBooking.remove(bookingId);
+        if (itemId == null)
+            return;
+
+        Intervals list = intervals.get(itemId);
+        list.remove(bookingId);
+        if (list.size == 0)
+            intervals.remove(itemId);
+    }
+
+    // интервалы одной вещи, отсортированные по (starts[i], ids[i]), заняты первые size позиций
+    private static class Intervals {
+        private LocalDateTime[] starts = new LocalDateTime[4];
+        private LocalDateTime[] ends = new LocalDateTime[4];
+        private int[] ids = new int[4];
+        private int size = 0;
+
+        void insert(LocalDateTime start, LocalDateTime end, int id) {
+            int pos = upperBound(start);
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(starts, pos, starts, pos + 1, size - pos);
+            System.arraycopy(ends, pos, ends, pos + 1, size - pos);
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            starts[pos] = start;
+            ends[pos] = end;
+            ids[pos] = id;
+            ++size;
+        }
+
+        void remove(int id) {
+            for (int pos = 0; pos < size; pos++) {
+                if (ids[pos] == id) {
+                    System.arraycopy(starts, pos + 1, starts, pos, size - pos - 1);
+                    System.arraycopy(ends, pos + 1, ends, pos, size - pos - 1);
+                    System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+                    --size;
+                    starts[size] = null;
+                    ends[size] = null;
+                    return;
+                }
+            }
+        }
+
+        // интервалы, начавшиеся до end, просматриваются от последнего к первому;
+        // концы отсортированы, поэтому первый интервал, закончившийся до start,
+        // завершает просмотр
+        List<BookingPeriodDto> overlapping(LocalDateTime start, LocalDateTime end) {
+            List<BookingPeriodDto> result = new ArrayList<>();
+            for (int i = lowerBound(end) - 1; i >= 0 && ends[i].isAfter(start); i--) {
+                result.add(new BookingPeriodDto(ids[i], starts[i], ends[i]));
+            }
+            Collections.reverse(result);
+            return result;
+        }
+
+        // первая позиция, начало на которой не меньше time
+        private int lowerBound(LocalDateTime time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid].isBefore(time))
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            return low;
+        }
+
+        // первая позиция, начало на которой больше time
+        private int upperBound(LocalDateTime time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (!starts[mid].isAfter(time))
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            return low;
+        }
+    }
+}
@@ -1,18 +1,251 @@
 package ru.practicum.shareit.booking.storage;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingWOwnerDto;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface BookingRepository extends JpaRepository<Booking, Integer> {
-    List<Booking> findByBookerOrderByStartDesc(int booker);
+    // выборка BookingDto одним запросом: название вещи и имя автора
+    // бронирования подтягиваются соединением с items и users
+    String SELECT_BOOKING_DTO = " select new ru.practicum.shareit.booking.dto.BookingDto("
+            + "b.id, b.start, b.end, i.id, i.name, u.id, u.name, b.status) "
+            + "from Booking b, Item i, User u "
+            + "where b.item = i.id and b.booker = u.id ";
+
+    String ORDER_BY_START_DESC = " order by b.start desc, b.id desc ";
+
+    // условие для вывода по курсору: бронирования, идущие
+    // в порядке ORDER_BY_START_DESC после (start, id) последнего выданного
+    String AFTER_CURSOR = " and (b.start < :afterStart or (b.start = :afterStart and b.id < :afterId)) ";
+
+    // условие по состоянию для потоковой выборки, параметр filter - BookingStateFilter
+    String STATE_FILTER = " and b.start > :#{#filter.startFrom} and b.start < :#{#filter.startTo} "
+            + " and b.end > :#{#filter.endFrom} and b.end < :#{#filter.endTo} "
+            + " and b.status in :#{#filter.statuses} ";
+
+    // бронирование, доступное автору или владельцу вещи
+    @Query(SELECT_BOOKING_DTO
+            + "and b.id = ?1 and (b.booker = ?2 or i.owner = ?2) ")
+    Optional<BookingDto> findBookingForUser(int id, int userId);
+
+    // бронирования пользователя с выборкой по состоянию на стороне БД
+    @Query(SELECT_BOOKING_DTO
+            + "and b.booker = ?1 "
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findBookerBookings(int booker, Pageable page);
+
+    @Query(SELECT_BOOKING_DTO
+            + "and b.booker = ?1 and b.start < ?2 and b.end > ?2 "
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findBookerCurrentBookings(int booker, LocalDateTime now, Pageable page);
+
+    @Query(SELECT_BOOKING_DTO
+            + "and b.booker = ?1 and b.end < ?2 "
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findBookerPastBookings(int booker, LocalDateTime now, Pageable page);
+
+    @Query(SELECT_BOOKING_DTO
+            + "and b.booker = ?1 and b.start > ?2 "
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findBookerFutureBookings(int booker, LocalDateTime now, Pageable page);
+
+    @Query(SELECT_BOOKING_DTO
+            + "and b.booker = ?1 and b.status = ?2 "
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findBookerBookingsByStatus(int booker, BookingStatus status, Pageable page);
+
+    // бронирования пользователя после курсора
+    @Query(SELECT_BOOKING_DTO
+            + "and b.booker = :booker " + AFTER_CURSOR
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findBookerBookingsAfter(@Param("booker") int booker,
+                                             @Param("afterStart") LocalDateTime afterStart,
+                                             @Param("afterId") int afterId, Pageable page);
+
+    @Query(SELECT_BOOKING_DTO
+            + "and b.booker = :booker and b.start < :now and b.end > :now " + AFTER_CURSOR
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findBookerCurrentBookingsAfter(@Param("booker") int booker, @Param("now") LocalDateTime now,
+                                                    @Param("afterStart") LocalDateTime afterStart,
+                                                    @Param("afterId") int afterId, Pageable page);
+
+    @Query(SELECT_BOOKING_DTO
+            + "and b.booker = :booker and b.end < :now " + AFTER_CURSOR
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findBookerPastBookingsAfter(@Param("booker") int booker, @Param("now") LocalDateTime now,
+                                                 @Param("afterStart") LocalDateTime afterStart,
+                                                 @Param("afterId") int afterId, Pageable page);
+
+    @Query(SELECT_BOOKING_DTO
+            + "and b.booker = :booker and b.start > :now " + AFTER_CURSOR
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findBookerFutureBookingsAfter(@Param("booker") int booker, @Param("now") LocalDateTime now,
+                                                   @Param("afterStart") LocalDateTime afterStart,
+                                                   @Param("afterId") int afterId, Pageable page);
+
+    @Query(SELECT_BOOKING_DTO
+            + "and b.booker = :booker and b.status = :status " + AFTER_CURSOR
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findBookerBookingsByStatusAfter(@Param("booker") int booker, @Param("status") BookingStatus status,
+                                                     @Param("afterStart") LocalDateTime afterStart,
+                                                     @Param("afterId") int afterId, Pageable page);
+
+    // бронирования вещей владельца с выборкой по состоянию на стороне БД,
+    // вещи отбираются тем же соединением с items по owner_id
+    @Query(SELECT_BOOKING_DTO
+            + "and i.owner = ?1 "
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findOwnerBookings(int owner, Pageable page);
+
+    @Query(SELECT_BOOKING_DTO
+            + "and i.owner = ?1 and b.start < ?2 and b.end > ?2 "
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findOwnerCurrentBookings(int owner, LocalDateTime now, Pageable page);
+
+    @Query(SELECT_BOOKING_DTO
+            + "and i.owner = ?1 and b.end < ?2 "
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findOwnerPastBookings(int owner, LocalDateTime now, Pageable page);
 
-    List<Booking> findByItemInOrderByStartDesc(List<Integer> itemIds);
+    @Query(SELECT_BOOKING_DTO
+            + "and i.owner = ?1 and b.start > ?2 "
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findOwnerFutureBookings(int owner, LocalDateTime now, Pageable page);
 
-    List<Booking> findByItemInOrderByStartAsc(List<Integer> itemIds);
+    @Query(SELECT_BOOKING_DTO
+            + "and i.owner = ?1 and b.status = ?2 "
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findOwnerBookingsByStatus(int owner, BookingStatus status, Pageable page);
+
+    // бронирования вещей владельца после курсора
+    @Query(SELECT_BOOKING_DTO
+            + "and i.owner = :owner " + AFTER_CURSOR
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findOwnerBookingsAfter(@Param("owner") int owner,
+                                            @Param("afterStart") LocalDateTime afterStart,
+                                            @Param("afterId") int afterId, Pageable page);
+
+    @Query(SELECT_BOOKING_DTO
+            + "and i.owner = :owner and b.start < :now and b.end > :now " + AFTER_CURSOR
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findOwnerCurrentBookingsAfter(@Param("owner") int owner, @Param("now") LocalDateTime now,
+                                                   @Param("afterStart") LocalDateTime afterStart,
+                                                   @Param("afterId") int afterId, Pageable page);
+
+    @Query(SELECT_BOOKING_DTO
+            + "and i.owner = :owner and b.end < :now " + AFTER_CURSOR
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findOwnerPastBookingsAfter(@Param("owner") int owner, @Param("now") LocalDateTime now,
+                                                @Param("afterStart") LocalDateTime afterStart,
+                                                @Param("afterId") int afterId, Pageable page);
+
+    @Query(SELECT_BOOKING_DTO
+            + "and i.owner = :owner and b.start > :now " + AFTER_CURSOR
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findOwnerFutureBookingsAfter(@Param("owner") int owner, @Param("now") LocalDateTime now,
+                                                  @Param("afterStart") LocalDateTime afterStart,
+                                                  @Param("afterId") int afterId, Pageable page);
+
+    @Query(SELECT_BOOKING_DTO
+            + "and i.owner = :owner and b.status = :status " + AFTER_CURSOR
+            + ORDER_BY_START_DESC)
+    List<BookingDto> findOwnerBookingsByStatusAfter(@Param("owner") int owner, @Param("status") BookingStatus status,
+                                                    @Param("afterStart") LocalDateTime afterStart,
+                                                    @Param("afterId") int afterId, Pageable page);
+
+    // потоковая выборка всех бронирований пользователя в состоянии из filter
+    // (см. BookingStateFilter); строки читаются из курсора порциями по 500
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_BOOKING_DTO
+            + "and b.booker = :booker " + STATE_FILTER
+            + ORDER_BY_START_DESC)
+    Stream<BookingDto> streamBookerBookings(@Param("booker") int booker, @Param("filter") BookingStateFilter filter);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_BOOKING_DTO
+            + "and i.owner = :owner " + STATE_FILTER
+            + ORDER_BY_START_DESC)
+    Stream<BookingDto> streamOwnerBookings(@Param("owner") int owner, @Param("filter") BookingStateFilter filter);
+
+    // последнее начавшееся и ближайшее следующее бронирования вещи
+    Optional<Booking> findFirstByItemAndStartBeforeOrderByStartDesc(int item, LocalDateTime now);
+
+    Optional<Booking> findFirstByItemAndStartGreaterThanEqualOrderByStartAsc(int item, LocalDateTime now);
+
+    // последние начавшиеся (start < now) бронирования сразу для нескольких вещей,
+    // по одному на вещь; при равном start выбирается бронирование с большим id.
+    // Список id вещей ограничивается вызывающим кодом (ItemServiceImpl.ID_BATCH_SIZE)
+    @Query(value = "select t.id, t.start_date, t.end_date, t.item_id, t.booker_id, t.status, t.version "
+            + "from (select b.*, row_number() over (partition by b.item_id order by b.start_date desc, b.id desc) as rn "
+            + "      from bookings b "
+            + "      where b.item_id in (?1) and b.start_date < ?2) t "
+            + "where t.rn = 1", nativeQuery = true)
+    List<Booking> findLastBookings(Collection<Integer> itemIds, LocalDateTime now);
+
+    // ближайшие следующие (start >= now) бронирования сразу для нескольких вещей,
+    // по одному на вещь; при равном start выбирается бронирование с меньшим id
+    @Query(value = "select t.id, t.start_date, t.end_date, t.item_id, t.booker_id, t.status, t.version "
+            + "from (select b.*, row_number() over (partition by b.item_id order by b.start_date asc, b.id asc) as rn "
+            + "      from bookings b "
+            + "      where b.item_id in (?1) and b.start_date >= ?2) t "
+            + "where t.rn = 1", nativeQuery = true)
+    List<Booking> findNextBookings(Collection<Integer> itemIds, LocalDateTime now);
 
     List<Booking> findByBookerAndItemOrderByStartAsc(int booker, int item);
+
+    // пакетная загрузка не закончившихся к end бронирований по возрастанию id
+    // (BookingAvailabilityStorage)
+    List<Booking> findByStatusAndEndAfterAndIdGreaterThanOrderById(BookingStatus status, LocalDateTime end, int id,
+                                                                   Pageable page);
+
+    // смена статуса, только если он все еще равен from; возвращает число
+    // измененных строк (0 или 1). Чтение и проверка статуса в Java не нужны,
+    // поэтому из одновременных и повторных запросов статус изменит только первый
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(" update Booking b set b.status = ?3, b.version = b.version + 1 "
+            + "where b.id = ?1 and b.status = ?2 ")
+    int updateStatus(int id, BookingStatus from, BookingStatus to);
+
+    // то же сразу для нескольких бронирований (PATCH /bookings/batch)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(" update Booking b set b.status = ?3, b.version = b.version + 1 "
+            + "where b.id in ?1 and b.status = ?2 ")
+    int updateStatuses(Collection<Integer> ids, BookingStatus from, BookingStatus to);
+
+    // бронирования вместе с владельцами вещей одним запросом
+    @Query(" select new ru.practicum.shareit.booking.dto.BookingWOwnerDto("
+            + "b.id, b.start, b.end, i.id, i.owner, b.status) "
+            + "from Booking b, Item i "
+            + "where b.item = i.id and b.id in ?1 ")
+    List<BookingWOwnerDto> findWithOwner(Collection<Integer> ids);
+
+    // бронирования вещей в статусе status, пересекающиеся с [start, end)
+    List<Booking> findByItemInAndStatusAndStartBeforeAndEndAfter(Collection<Integer> items, BookingStatus status,
+                                                                 LocalDateTime end, LocalDateTime start);
+
+    @Query(" select b.status from Booking b where b.id = ?1 ")
+    Optional<BookingStatus> findStatusById(int id);
+
+    // есть ли у вещи бронирование в статусе status, пересекающееся с [start, end),
+    // кроме бронирования id
+    boolean existsByItemAndStatusAndStartBeforeAndEndAfterAndIdNot(int item, BookingStatus status,
+                                                                    LocalDateTime end, LocalDateTime start, int id);
 }
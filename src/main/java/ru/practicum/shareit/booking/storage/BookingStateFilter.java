@@ -0,0 +1,54 @@
+package ru.practicum.shareit.booking.storage;
+
+/*
+Условие выборки бронирований по состоянию (ALL, CURRENT, PAST, FUTURE,
+WAITING, REJECTED) в виде границ start и end и набора статусов.
+Позволяет обойтись одним потоковым запросом на все состояния
+(см. BookingRepository.streamBookerBookings)
+ */
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import ru.practicum.shareit.booking.model.BookingStatus;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+
+@Getter
+@AllArgsConstructor
+public class BookingStateFilter {
+    // границы, за которые не выходит ни одно бронирование
+    private static final LocalDateTime MIN_TIME = LocalDateTime.of(1, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIME = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    // start и end строго внутри интервалов (startFrom, startTo) и (endFrom, endTo)
+    private LocalDateTime startFrom;
+    private LocalDateTime startTo;
+    private LocalDateTime endFrom;
+    private LocalDateTime endTo;
+    private Set<BookingStatus> statuses;
+
+    // null для неизвестного состояния
+    public static BookingStateFilter of(String state, LocalDateTime now) {
+        Set<BookingStatus> all = EnumSet.allOf(BookingStatus.class);
+        switch (state) {
+            case "ALL":
+                return new BookingStateFilter(MIN_TIME, MAX_TIME, MIN_TIME, MAX_TIME, all);
+            case "CURRENT":
+                return new BookingStateFilter(MIN_TIME, now, now, MAX_TIME, all);
+            case "PAST":
+                return new BookingStateFilter(MIN_TIME, MAX_TIME, MIN_TIME, now, all);
+            case "FUTURE":
+                return new BookingStateFilter(now, MAX_TIME, MIN_TIME, MAX_TIME, all);
+            case "WAITING":
+                return new BookingStateFilter(MIN_TIME, MAX_TIME, MIN_TIME, MAX_TIME,
+                        EnumSet.of(BookingStatus.WAITING));
+            case "REJECTED":
+                return new BookingStateFilter(MIN_TIME, MAX_TIME, MIN_TIME, MAX_TIME,
+                        EnumSet.of(BookingStatus.REJECTED));
+            default:
+                return null;
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package ru.practicum.shareit.item;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -14,16 +18,22 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentInputDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityInputDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemWBookingsDto;
+import ru.practicum.shareit.item.dto.MinItemDto;
 import ru.practicum.shareit.item.exceptions.ItemAccessRestrictException;
 import ru.practicum.shareit.item.exceptions.ItemBadPageParamsException;
 import ru.practicum.shareit.item.exceptions.ItemIncompleteDataException;
 import ru.practicum.shareit.item.exceptions.ItemNotFoundException;
 import ru.practicum.shareit.item.service.ItemService;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
+import ru.practicum.shareit.util.PageCursor;
+import ru.practicum.shareit.util.ResultStream;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -35,6 +45,7 @@ import java.util.Map;
 @RequestMapping("/items")
 public class ItemController {
     private final ItemService itemService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public ItemDto postItem(@RequestHeader("X-Sharer-User-Id") int userId,
@@ -67,21 +78,72 @@ public class ItemController {
         return itemService.getItem(itemId, userId);
     }
 
+    // постраничный вывод: по номеру страницы (from, size) или по курсору (cursor, size),
+    // в курсорном режиме курсор следующей страницы возвращается в заголовке X-Next-Cursor
     @GetMapping
-    public List<ItemWBookingsDto> getUserItems(@RequestHeader("X-Sharer-User-Id") int userId,
-                                               @RequestParam(required = false) Integer from,
-                                               @RequestParam(required = false) Integer size) {
-        log.info("GET /items userId=" + userId + " from=" + from + " size=" + size);
-        return itemService.getAllItems(userId, from, size);
+    public ResponseEntity<List<ItemWBookingsDto>> getUserItems(@RequestHeader("X-Sharer-User-Id") int userId,
+                                                               @RequestParam(required = false) Integer from,
+                                                               @RequestParam(required = false) Integer size,
+                                                               @RequestParam(required = false) String cursor) {
+        log.info("GET /items userId=" + userId + " from=" + from + " size=" + size + " cursor=" + cursor);
+        return PageCursor.toResponse(itemService.getAllItems(userId, from, size, cursor),
+                cursor,
+                size,
+                item -> new PageCursor(item.getId()));
+    }
+
+    // потоковая выдача всех вещей пользователя (Accept: application/x-ndjson)
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUserItems(@RequestHeader("X-Sharer-User-Id") int userId) {
+        log.info("GET /items (ndjson) userId=" + userId);
+        return ResultStream.toNdjsonResponse(itemService.streamAllItems(userId), objectMapper);
     }
 
     @GetMapping("/search")
-    public List<ItemDto> searchForItems(@RequestHeader(value = "X-Sharer-User-Id") int userId,
-                                        @RequestParam String text,
-                                        @RequestParam(required = false) Integer from,
-                                        @RequestParam(required = false) Integer size) {
-        log.info("GET /items/search userId=" + userId + " text=" + text + " from=" + from + " size=" + size);
-        return itemService.searchItems(text, userId, from, size);
+    public ResponseEntity<List<ItemDto>> searchForItems(@RequestHeader(value = "X-Sharer-User-Id") int userId,
+                                                        @RequestParam String text,
+                                                        @RequestParam(required = false) Integer from,
+                                                        @RequestParam(required = false) Integer size,
+                                                        @RequestParam(required = false) String cursor,
+                                                        @RequestParam(required = false)
+                                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                        LocalDateTime start,
+                                                        @RequestParam(required = false)
+                                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                        LocalDateTime end) {
+        log.info("GET /items/search userId=" + userId + " text=" + text + " from=" + from + " size=" + size
+                + " cursor=" + cursor + " start=" + start + " end=" + end);
+        return PageCursor.toResponse(itemService.searchItems(text, userId, from, size, cursor, start, end),
+                cursor,
+                size,
+                item -> new PageCursor(item.getId()));
+    }
+
+    @GetMapping("/suggest")
+    public List<MinItemDto> suggestItems(@RequestHeader(value = "X-Sharer-User-Id") int userId,
+                                         @RequestParam String prefix,
+                                         @RequestParam(required = false) Integer size) {
+        log.info("GET /items/suggest userId=" + userId + " prefix=" + prefix + " size=" + size);
+        return itemService.suggestItems(prefix, userId, size);
+    }
+
+    @GetMapping("/{itemId}/availability")
+    public ItemAvailabilityDto getAvailability(@RequestHeader(value = "X-Sharer-User-Id") int userId,
+                                               @PathVariable int itemId,
+                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                               LocalDateTime start,
+                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                               LocalDateTime end) {
+        log.info("GET /items/" + itemId + "/availability userId=" + userId + " start=" + start + " end=" + end);
+        return itemService.getAvailability(itemId, userId, start, end);
+    }
+
+    @PostMapping("/availability")
+    public List<ItemAvailabilityDto> getAvailability(@RequestHeader(value = "X-Sharer-User-Id") int userId,
+                                                     @RequestBody ItemAvailabilityInputDto request) {
+        log.info("POST /items/availability userId=" + userId + " start=" + request.getStart()
+                + " end=" + request.getEnd());
+        return itemService.getAvailability(request, userId);
     }
 
     @ExceptionHandler(ItemIncompleteDataException.class)
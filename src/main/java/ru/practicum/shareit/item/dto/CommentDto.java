@@ -5,12 +5,14 @@ package ru.practicum.shareit.item.dto;
 внутри ItemWBookingsDto
  */
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
 import java.time.LocalDateTime;
 
 @Data
+@AllArgsConstructor
 @Builder
 public class CommentDto {
     private int id;
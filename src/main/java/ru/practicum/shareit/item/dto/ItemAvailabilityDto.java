@@ -0,0 +1,23 @@
+package ru.practicum.shareit.item.dto;
+
+/*
+Dto объект с занятостью вещи за период.
+available - вещь доступна и в периоде нет одобренных бронирований,
+busy - одобренные бронирования, пересекающиеся с периодом
+ */
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.practicum.shareit.booking.dto.BookingPeriodDto;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ItemAvailabilityDto {
+    private int itemId;
+    private boolean available;
+    private List<BookingPeriodDto> busy;
+}
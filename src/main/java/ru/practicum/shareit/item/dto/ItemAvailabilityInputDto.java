@@ -0,0 +1,22 @@
+package ru.practicum.shareit.item.dto;
+
+/*
+Dto объект для получения от пользователя
+списка вещей и периода (POST /items/availability)
+ */
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ItemAvailabilityInputDto {
+    private List<Integer> itemIds;
+    private LocalDateTime start;
+    private LocalDateTime end;
+}
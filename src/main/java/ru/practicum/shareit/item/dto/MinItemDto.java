@@ -2,7 +2,7 @@ package ru.practicum.shareit.item.dto;
 
 /*
 Сокращенная версия dto для вещей.
-Используется в BookingDto
+Используется в BookingDto и в подсказках по названию
  */
 
 import lombok.AllArgsConstructor;
@@ -2,9 +2,14 @@ package ru.practicum.shareit.item.service;
 
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentInputDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityInputDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemWBookingsDto;
+import ru.practicum.shareit.item.dto.MinItemDto;
+import ru.practicum.shareit.util.ResultStream;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ItemService {
@@ -14,11 +19,27 @@ public interface ItemService {
 
     ItemWBookingsDto getItem(int id, int userId);
 
-    List<ItemWBookingsDto> getAllItems(int userId, Integer from, Integer size);
+    // cursor - курсор из заголовка X-Next-Cursor предыдущей страницы
+    // (пустая строка - первая страница), несовместим с from
+    List<ItemWBookingsDto> getAllItems(int userId, Integer from, Integer size, String cursor);
+
+    // все вещи пользователя для потоковой выдачи
+    ResultStream<ItemWBookingsDto> streamAllItems(int userId);
 
     ItemDto updateItem(ItemDto item, int itemId, int userId);
 
     void deleteItem(int id, int userId);
 
-    List<ItemDto> searchItems(String request, int userId, Integer from, Integer size);
+    // start и end задаются вместе: тогда находятся только вещи
+    // без одобренных и ожидающих бронирований в периоде [start, end)
+    List<ItemDto> searchItems(String request, int userId, Integer from, Integer size, String cursor,
+                              LocalDateTime start, LocalDateTime end);
+
+    List<MinItemDto> suggestItems(String prefix, int userId, Integer size);
+
+    // занятость вещи одобренными бронированиями в периоде [start, end)
+    ItemAvailabilityDto getAvailability(int itemId, int userId, LocalDateTime start, LocalDateTime end);
+
+    // то же для нескольких вещей, ненайденные вещи пропускаются
+    List<ItemAvailabilityDto> getAvailability(ItemAvailabilityInputDto request, int userId);
 }
@@ -8,20 +8,26 @@ package ru.practicum.shareit.item.service;
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
-import ru.practicum.shareit.booking.dto.MinBookingDto;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingDtoMapper;
+import ru.practicum.shareit.booking.dto.BookingPeriodDto;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.storage.BookingAvailabilityStorage;
 import ru.practicum.shareit.booking.storage.BookingRepository;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentDtoMapper;
 import ru.practicum.shareit.item.dto.CommentInputDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityInputDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemDtoMapper;
 import ru.practicum.shareit.item.dto.ItemWBookingsDto;
+import ru.practicum.shareit.item.dto.MinItemDto;
 import ru.practicum.shareit.item.exceptions.ItemAccessRestrictException;
 import ru.practicum.shareit.item.exceptions.ItemBadPageParamsException;
 import ru.practicum.shareit.item.exceptions.ItemIncompleteDataException;
@@ -30,29 +36,56 @@ import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.storage.CommentRepository;
 import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.item.storage.ItemSearchStorage;
+import ru.practicum.shareit.item.storage.ItemSuggestStorage;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
 import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserIdIndex;
 import ru.practicum.shareit.user.storage.UserRepository;
+import ru.practicum.shareit.util.PageParams;
+import ru.practicum.shareit.util.ResultStream;
 
+import javax.persistence.EntityManager;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RequiredArgsConstructor
 @Getter
 @Component
 public class ItemServiceImpl implements ItemService {
+    private static final int DEFAULT_SUGGEST_SIZE = 10;
+    private static final int MAX_SUGGEST_SIZE = 50;
+    private static final int STREAM_CHUNK_SIZE = 100;
+
+    // наибольшее число id вещей в одном IN-списке запросов бронирований и
+    // комментариев; PostgreSQL не принимает больше 32767 параметров
+    private static final int ID_BATCH_SIZE = 1000;
+    private static final int MAX_AVAILABILITY_ITEMS = 1000;
+
     private final ItemRepository itemRepository;
     private final UserRepository userRepository;
+    private final UserIdIndex userIdIndex;
     private final BookingRepository bookingRepository;
     private final CommentRepository commentRepository;
+    private final ItemSearchStorage itemSearchStorage;
+    private final ItemSuggestStorage itemSuggestStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final BookingAvailabilityStorage bookingAvailabilityStorage;
 
     @Override
     public ItemDto addItem(ItemDto itemDto, int userId) {
-        if (!userRepository.existsById(userId))
+        if (!userIdIndex.exists(userId))
             throw new UserNotFoundException("Пользователь " + userId + " не найден");
         if (itemDto.getName() == null || itemDto.getName().equals(""))
             throw new ItemIncompleteDataException("Пустое имя");
@@ -63,7 +96,10 @@ public class ItemServiceImpl implements ItemService {
 
         Item temp = ItemDtoMapper.toItem(itemDto);
         temp.setOwner(userId);
-        return ItemDtoMapper.toItemDto(itemRepository.save(temp));
+        Item saved = itemRepository.save(temp);
+        itemSearchStorage.onSave(saved);
+        itemSuggestStorage.onSave(saved);
+        return ItemDtoMapper.toItemDto(saved);
     }
 
     @Override
@@ -116,102 +152,130 @@ public class ItemServiceImpl implements ItemService {
     }
 
     @Override
-    public List<ItemWBookingsDto> getAllItems(int userId, Integer from, Integer size) {
-        if (!userRepository.existsById(userId))
+    public List<ItemWBookingsDto> getAllItems(int userId, Integer from, Integer size, String cursor) {
+        if (!userIdIndex.exists(userId))
             throw new UserNotFoundException("Пользователь " + userId + " не найден");
 
+        PageParams params = PageParams.of(from, size, cursor, ItemBadPageParamsException::new);
+
         List<Item> temp;
 
+        // без пагинации выводятся все вещи владельца, постранично - только
+        // доступные; страница отбирается в БД
+        if (params.isUnpaged())
+            temp = itemRepository.findByOwnerOrderById(userId);
+        else if (params.hasCursor())
+            temp = itemRepository.findByOwnerAndAvailableTrueAndIdGreaterThanOrderById(userId,
+                    params.getCursor().getId(), params.toPageable());
+        else
+            temp = itemRepository.findByOwnerAndAvailableTrueOrderById(userId, params.toPageable());
+
+        return toItemWBookingsDtoList(temp);
+    }
+
+    // вещи читаются из потока порциями по STREAM_CHUNK_SIZE, бронирования
+    // и комментарии запрашиваются для каждой порции. После порции контекст
+    // сохраняемости очищается, чтобы загруженные сущности не накапливались
+    @Override
+    public ResultStream<ItemWBookingsDto> streamAllItems(int userId) {
+        if (!userIdIndex.exists(userId))
+            throw new UserNotFoundException("Пользователь " + userId + " не найден");
+
+        return action -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Item> items = itemRepository.streamByOwner(userId)) {
+                List<Item> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+                Iterator<Item> iterator = items.iterator();
+                while (iterator.hasNext()) {
+                    chunk.add(iterator.next());
+                    if (chunk.size() == STREAM_CHUNK_SIZE || !iterator.hasNext()) {
+                        toItemWBookingsDtoList(chunk).forEach(action);
+                        chunk.clear();
+                        entityManager.clear();
+                    }
+                }
+            }
+        });
+    }
+
+    // ближайшие бронирования и комментарии запрашиваются сразу для
+    // порции из ID_BATCH_SIZE вещей, а не для каждой по отдельности
+    private List<ItemWBookingsDto> toItemWBookingsDtoList(List<Item> temp) {
         List<ItemWBookingsDto> result = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < temp.size(); i += ID_BATCH_SIZE)
+            addItemWBookingsDto(temp.subList(i, Math.min(i + ID_BATCH_SIZE, temp.size())), now, result);
 
-        if (from == null && size == null)
-            temp = itemRepository.findByOwnerOrderById(userId);
-        else if (from == null || size == null || from < 0 || size <= 0)
-            throw new ItemBadPageParamsException("Параметры: from=" + from + " size=" + size);
-        else {
-            Sort sortById = Sort.by(Sort.Direction.ASC, "id");
-            Pageable page = PageRequest.of(from, size, sortById);
-            Page<Item> itemPage = itemRepository.findAll(page);
-
-            temp = itemPage.get()
-                    .filter(item -> item.getAvailable().equals(true))
-                    .filter(item -> item.getOwner() == userId)
-                    .collect(Collectors.toList());
-        }
+        return result;
+    }
+
+    private void addItemWBookingsDto(List<Item> temp, LocalDateTime now, List<ItemWBookingsDto> result) {
+        List<Integer> itemIds = temp.stream()
+                .map(Item::getId)
+                .collect(Collectors.toList());
+        Map<Integer, Booking> lastBookings = bookingRepository.findLastBookings(itemIds, now).stream()
+                .collect(Collectors.toMap(Booking::getItem, Function.identity()));
+        Map<Integer, Booking> nextBookings = bookingRepository.findNextBookings(itemIds, now).stream()
+                .collect(Collectors.toMap(Booking::getItem, Function.identity()));
+        Map<Integer, List<CommentDto>> comments = getCommentDtoMap(itemIds);
 
         for (Item item : temp) {
-            result.add(findCloseBookings(item));
+            result.add(ItemDtoMapper.toItemWBookingsDto(item,
+                    BookingDtoMapper.toMinBookingDto(lastBookings.get(item.getId())),
+                    BookingDtoMapper.toMinBookingDto(nextBookings.get(item.getId())),
+                    comments.getOrDefault(item.getId(), new ArrayList<>())));
         }
-
-        return result;
     }
 
-    // метод, собирающий список комментариев к вещи
-    private List<CommentDto> getCommentDtoList(Item item) {
-        List<Comment> tempCommentList = commentRepository.findByItem(item.getId());
-        List<CommentDto> result = new ArrayList<>();
+    // метод, собирающий комментарии сразу к нескольким вещам:
+    // один запрос за комментариями и один за именами их авторов
+    private Map<Integer, List<CommentDto>> getCommentDtoMap(List<Integer> itemIds) {
+        List<Comment> tempCommentList = commentRepository.findByItemIn(itemIds);
+        Map<Integer, List<CommentDto>> result = new HashMap<>();
+        if (tempCommentList.isEmpty())
+            return result;
+
+        Set<Integer> authorIds = tempCommentList.stream()
+                .map(Comment::getAuthor)
+                .collect(Collectors.toSet());
+        Map<Integer, String> authorNames = userRepository.findAllById(authorIds).stream()
+                .collect(Collectors.toMap(User::getId, User::getName));
 
         for (Comment comment : tempCommentList) {
-            result.add(CommentDtoMapper.toCommentDto(comment, userRepository.findById(comment.getAuthor()).get().getName()));
+            result.computeIfAbsent(comment.getItem(), id -> new ArrayList<>())
+                    .add(CommentDtoMapper.toCommentDto(comment, authorNames.get(comment.getAuthor())));
         }
 
         return result;
     }
 
+    // метод, собирающий список комментариев к вещи
+    private List<CommentDto> getCommentDtoList(Item item) {
+        return commentRepository.findCommentDtos(item.getId(), Pageable.unpaged());
+    }
+
     // метод, определяющий два ближайших к текущей дате
     // бронирования (прошедшее/текущее и следующее)
     private ItemWBookingsDto findCloseBookings(Item item) {
-        List<Booking> itemBookings = bookingRepository.findByItemInOrderByStartAsc(Collections.singletonList(item.getId()));
-
-        ItemWBookingsDto result = null;
-
-        switch (itemBookings.size()) {
-            case 0:
-                result = ItemDtoMapper.toItemWBookingsDto(item,
-                        null,
-                        null,
-                        getCommentDtoList(item));
-                break;
-            case 1:
-                Booking tempBooking = itemBookings.get(0);
-                if (tempBooking.getStart().isBefore(LocalDateTime.now()))
-                    result = ItemDtoMapper.toItemWBookingsDto(item,
-                            new MinBookingDto(tempBooking.getId(), tempBooking.getBooker()),
-                            null,
-                            getCommentDtoList(item));
-                else
-                    result = ItemDtoMapper.toItemWBookingsDto(item,
-                            null,
-                            new MinBookingDto(tempBooking.getId(), tempBooking.getBooker()),
-                            getCommentDtoList(item));
-                break;
-            default:
-                Booking prevBooking = null;
-                for (Booking booking : itemBookings) {
-                    if (booking.getStart().isBefore(LocalDateTime.now())) {
-                        prevBooking = booking;
-                    } else {
-                        if (prevBooking != null)
-                            result = ItemDtoMapper.toItemWBookingsDto(item,
-                                    new MinBookingDto(prevBooking.getId(), prevBooking.getBooker()),
-                                    new MinBookingDto(booking.getId(), booking.getBooker()),
-                                    getCommentDtoList(item));
-                        else
-                            result = ItemDtoMapper.toItemWBookingsDto(item,
-                                    null,
-                                    new MinBookingDto(booking.getId(), booking.getBooker()),
-                                    getCommentDtoList(item));
-                        break;
-                    }
-                }
-        }
-
-        return result;
+        LocalDateTime now = LocalDateTime.now();
+        Optional<Booking> lastBooking
+                = bookingRepository.findFirstByItemAndStartBeforeOrderByStartDesc(item.getId(), now);
+        Optional<Booking> nextBooking
+                = bookingRepository.findFirstByItemAndStartGreaterThanEqualOrderByStartAsc(item.getId(), now);
+
+        return ItemDtoMapper.toItemWBookingsDto(item,
+                BookingDtoMapper.toMinBookingDto(lastBooking.orElse(null)),
+                BookingDtoMapper.toMinBookingDto(nextBooking.orElse(null)),
+                getCommentDtoList(item));
     }
 
+    // findById отдает экземпляр из кэша items, общий для всех запросов:
+    // изменения вносятся в копию, поэтому при ошибке save в кэше остается
+    // вещь из БД. Запись кэша сбрасывается после сохранения: findById
+    // в начале метода снова кладет в кэш вещь до изменения
     @Override
+    @CacheEvict(cacheNames = "items", key = "#itemId")
     public ItemDto updateItem(ItemDto itemDto, int itemId, int userId) {
-        if (!userRepository.existsById(userId))
+        if (!userIdIndex.exists(userId))
             throw new UserNotFoundException("Пользователь " + userId + " не найден");
         Optional<Item> temp = itemRepository.findById(itemId);
         if (temp.isEmpty())
@@ -221,17 +285,25 @@ public class ItemServiceImpl implements ItemService {
         if (temp.get().getOwner() != userId)
             throw new ItemAccessRestrictException("Только владелец вещи может ее изменить");
 
+        Item item = temp.get().toBuilder().build();
         if (itemDto.getName() != null)
-            temp.get().setName(itemDto.getName());
+            item.setName(itemDto.getName());
         if (itemDto.getDescription() != null)
-            temp.get().setDescription(itemDto.getDescription());
+            item.setDescription(itemDto.getDescription());
         if (itemDto.getAvailable() != null)
-            temp.get().setAvailable(itemDto.getAvailable());
+            item.setAvailable(itemDto.getAvailable());
 
-        return ItemDtoMapper.toItemDto(itemRepository.save(temp.get()));
+        Item saved = itemRepository.save(item);
+        itemSearchStorage.onSave(saved);
+        itemSuggestStorage.onSave(saved);
+        return ItemDtoMapper.toItemDto(saved);
     }
 
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "items", key = "#id"),
+            @CacheEvict(cacheNames = "itemExists", key = "#id")
+    })
     public void deleteItem(int id, int userId) {
         Optional<Item> temp = itemRepository.findById(id);
         if (temp.isEmpty())
@@ -240,34 +312,39 @@ public class ItemServiceImpl implements ItemService {
             throw new ItemAccessRestrictException("Только владелец вещи может ее удалить");
 
         itemRepository.deleteById(id);
+        itemSearchStorage.onDelete(id);
+        itemSuggestStorage.onDelete(id);
     }
 
     @Override
-    public List<ItemDto> searchItems(String request, int userId, Integer from, Integer size) {
-        if (!userRepository.existsById(userId))
+    public List<ItemDto> searchItems(String request, int userId, Integer from, Integer size, String cursor,
+                                     LocalDateTime start, LocalDateTime end) {
+        if (!userIdIndex.exists(userId))
             throw new UserNotFoundException("Пользователь " + userId + " не найден");
 
+        PageParams params = PageParams.of(from, size, cursor, ItemBadPageParamsException::new);
+        boolean byPeriod = start != null || end != null;
+        if (byPeriod)
+            checkPeriod(start, end);
+
         List<ItemDto> result = new ArrayList<>();
 
         if (!"".equals(request)) {
             List<Item> temp;
 
-            if (from == null && size == null)
-                temp = itemRepository.search(request);
-            else if (from == null || size == null || from < 0 || size <= 0)
-                throw new ItemBadPageParamsException("Параметры: from=" + from + " size=" + size);
-            else {
-                Sort sortById = Sort.by(Sort.Direction.ASC, "id");
-                Pageable page = PageRequest.of(from, size, sortById);
-                Page<Item> itemPage = itemRepository.findAll(page);
-
-                temp = itemPage.get()
-                        .filter(item -> item.getAvailable().equals(true))
-                        .filter(item -> item.getName().toLowerCase().contains(request.toLowerCase())
-                                || item.getDescription().toLowerCase().contains(request.toLowerCase()))
-                        .filter(item -> item.getOwner() == userId)
-                        .collect(Collectors.toList());
-            }
+            // в курсорном режиме поиск всегда идет по возрастанию id.
+            // Поиск по периоду идет одним запросом к БД при любом shareit.search.mode:
+            // занятость проверяется в нем же, без обращения к бронированиям каждой вещи
+            int afterId = params.hasCursor() ? params.getCursor().getId() : 0;
+            if (byPeriod && params.isCursorMode())
+                temp = itemRepository.searchFreeAfter(request, start, end, afterId,
+                        PageRequest.of(0, params.getSize()));
+            else if (byPeriod)
+                temp = itemRepository.searchFree(request, start, end, params.toPageable()).getContent();
+            else if (params.isCursorMode())
+                temp = itemSearchStorage.searchAfter(request, afterId, params.getSize());
+            else
+                temp = itemSearchStorage.search(request, params.toPageable()).getContent();
 
             for (Item item : temp) {
                 result.add(ItemDtoMapper.toItemDto(item));
@@ -276,4 +353,68 @@ public class ItemServiceImpl implements ItemService {
 
         return result;
     }
+
+    // подсказки обслуживаются из памяти (ItemSuggestStorage),
+    // существование пользователя проверяется по UserIdIndex без запроса к БД
+    @Override
+    public List<MinItemDto> suggestItems(String prefix, int userId, Integer size) {
+        if (!userIdIndex.exists(userId))
+            throw new UserNotFoundException("Пользователь " + userId + " не найден");
+
+        if (size == null)
+            size = DEFAULT_SUGGEST_SIZE;
+        else if (size <= 0 || size > MAX_SUGGEST_SIZE)
+            throw new ItemBadPageParamsException("Параметры: size=" + size);
+
+        if (prefix == null || "".equals(prefix))
+            return new ArrayList<>();
+
+        return itemSuggestStorage.suggest(prefix, size);
+    }
+
+    // занятость берется из BookingAvailabilityStorage: для будущих периодов
+    // из памяти, из БД читаются только сами вещи
+    @Override
+    public ItemAvailabilityDto getAvailability(int itemId, int userId, LocalDateTime start, LocalDateTime end) {
+        if (!userIdIndex.exists(userId))
+            throw new UserNotFoundException("Пользователь " + userId + " не найден");
+        checkPeriod(start, end);
+        Optional<Item> tempItem = itemRepository.findById(itemId);
+        if (tempItem.isEmpty())
+            throw new ItemNotFoundException("Вещь " + itemId + " не найдена");
+
+        return toAvailabilityDto(tempItem.get(), bookingAvailabilityStorage.findBusy(itemId, start, end));
+    }
+
+    @Override
+    public List<ItemAvailabilityDto> getAvailability(ItemAvailabilityInputDto request, int userId) {
+        if (!userIdIndex.exists(userId))
+            throw new UserNotFoundException("Пользователь " + userId + " не найден");
+        checkPeriod(request.getStart(), request.getEnd());
+        if (request.getItemIds() == null || request.getItemIds().isEmpty())
+            return new ArrayList<>();
+        if (request.getItemIds().size() > MAX_AVAILABILITY_ITEMS)
+            throw new ItemIncompleteDataException("Можно запросить не больше " + MAX_AVAILABILITY_ITEMS + " вещей");
+
+        Map<Integer, Item> items = itemRepository.findAllById(request.getItemIds()).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        Map<Integer, List<BookingPeriodDto>> busy = bookingAvailabilityStorage.findBusy(items.keySet(),
+                request.getStart(), request.getEnd());
+
+        // порядок ответа совпадает с порядком запроса
+        return request.getItemIds().stream()
+                .distinct()
+                .filter(items::containsKey)
+                .map(id -> toAvailabilityDto(items.get(id), busy.getOrDefault(id, Collections.emptyList())))
+                .collect(Collectors.toList());
+    }
+
+    private void checkPeriod(LocalDateTime start, LocalDateTime end) {
+        if (start == null || end == null || !start.isBefore(end))
+            throw new ItemIncompleteDataException("Период задан неверно: start=" + start + " end=" + end);
+    }
+
+    private ItemAvailabilityDto toAvailabilityDto(Item item, List<BookingPeriodDto> busy) {
+        return new ItemAvailabilityDto(item.getId(), Boolean.TRUE.equals(item.getAvailable()) && busy.isEmpty(), busy);
+    }
 }
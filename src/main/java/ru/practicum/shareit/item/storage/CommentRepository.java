@@ -1,12 +1,23 @@
 package ru.practicum.shareit.item.storage;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.model.Comment;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Integer> {
-    List<Comment> findByItem(int itemId);
+    // комментарии к вещи вместе с именами авторов одним запросом
+    @Query(" select new ru.practicum.shareit.item.dto.CommentDto(c.id, c.text, u.name, c.created) "
+            + "from Comment c, User u "
+            + "where c.author = u.id and c.item = ?1 "
+            + "order by c.created asc, c.id asc ")
+    List<CommentDto> findCommentDtos(int itemId, Pageable page);
+
+    List<Comment> findByItemIn(Collection<Integer> itemIds);
 }
@@ -0,0 +1,119 @@
+package ru.practicum.shareit.item.storage;
+
+/*
+Поиск по инвертированному индексу в памяти (ItemSearchIndex), без обращения к БД.
+Индекс заполняется из БД при старте, обновляется через onSave/onDelete
+из ItemServiceImpl и периодически сверяется с БД
+(shareit.search.index.check-interval)
+ */
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.model.Item;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+@RequiredArgsConstructor
+@Slf4j
+@Component
+@EnableScheduling
+@ConditionalOnProperty(name = "shareit.search.mode", havingValue = "index")
+public class IndexItemSearchStorage implements ItemSearchStorage {
+    private static final int BATCH_SIZE = 500;
+
+    private final ItemRepository itemRepository;
+    private final ItemSearchIndex index = new ItemSearchIndex();
+
+    @PostConstruct
+    public void rebuild() {
+        List<Item> items = new ArrayList<>();
+        int lastId = 0;
+        List<Item> batch;
+        do {
+            batch = itemRepository.findByIdGreaterThanOrderById(lastId, PageRequest.of(0, BATCH_SIZE));
+            items.addAll(batch);
+            if (!batch.isEmpty())
+                lastId = batch.get(batch.size() - 1).getId();
+        } while (batch.size() == BATCH_SIZE);
+
+        index.reset(items);
+        log.info("Индекс поиска построен: вещей {}", items.size());
+    }
+
+    // сверка индекса с БД: недостающие и устаревшие записи обновляются,
+    // лишние удаляются; возвращается число исправленных записей.
+    // Вещи, сохраненные или удаленные во время сверки, не исправляются:
+    // запись через onSave/onDelete новее строки, прочитанной сверкой
+    @Scheduled(initialDelayString = "${shareit.search.index.check-interval:PT10M}",
+            fixedDelayString = "${shareit.search.index.check-interval:PT10M}")
+    public int checkConsistency() {
+        index.beginCheck();
+        try {
+            Set<Integer> stale = index.ids();
+            int repaired = 0;
+            int lastId = 0;
+            List<Item> batch;
+            do {
+                batch = itemRepository.findByIdGreaterThanOrderById(lastId, PageRequest.of(0, BATCH_SIZE));
+                for (Item item : batch) {
+                    stale.remove(item.getId());
+                    if (!item.equals(index.get(item.getId())) && index.repair(item))
+                        ++repaired;
+                    lastId = item.getId();
+                }
+            } while (batch.size() == BATCH_SIZE);
+
+            for (int id : stale) {
+                if (index.repairRemove(id))
+                    ++repaired;
+            }
+
+            if (repaired > 0)
+                log.warn("Индекс поиска расходился с БД, исправлено записей: {}", repaired);
+            return repaired;
+        } finally {
+            index.endCheck();
+        }
+    }
+
+    public ItemSearchIndex getIndex() {
+        return index;
+    }
+
+    @Override
+    public Slice<Item> search(String text, Pageable page) {
+        if (page.isUnpaged())
+            return new SliceImpl<>(index.search(text, 0, Integer.MAX_VALUE));
+
+        // на одну вещь больше, чтобы определить hasNext
+        List<Item> found = index.search(text, page.getOffset(), page.getPageSize() + 1);
+        boolean hasNext = found.size() > page.getPageSize();
+        return new SliceImpl<>(hasNext ? found.subList(0, page.getPageSize()) : found, page, hasNext);
+    }
+
+    @Override
+    public List<Item> searchAfter(String text, int afterId, int size) {
+        return index.searchAfter(text, afterId, size);
+    }
+
+    @Override
+    public void onSave(Item item) {
+        index.put(item);
+    }
+
+    @Override
+    public void onDelete(int id) {
+        index.remove(id);
+    }
+}
@@ -1,26 +1,137 @@
 package ru.practicum.shareit.item.storage;
 
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.item.dto.MinItemDto;
 import ru.practicum.shareit.item.model.Item;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface ItemRepository extends JpaRepository<Item, Integer> {
+    // кэш вещей по id (items и itemExists), сбрасывается
+    // в ItemServiceImpl.updateItem/deleteItem
+    @Override
+    @Cacheable(cacheNames = "items", key = "#p0", unless = "#result == null")
+    Optional<Item> findById(Integer id);
+
+    @Override
+    @Cacheable(cacheNames = "itemExists", key = "#p0", unless = "!#result")
+    boolean existsById(Integer id);
+
+    // блокировка строки вещи (select ... for update) до конца транзакции:
+    // бронирования одной вещи создаются и одобряются по очереди,
+    // бронирования разных вещей друг друга не ждут
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(" select i from Item i where i.id = ?1 ")
+    Optional<Item> lockById(int id);
+
+    // блокировка сразу нескольких вещей; строки берутся по возрастанию id,
+    // чтобы одновременные пакетные запросы не блокировали друг друга взаимно
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(" select i from Item i where i.id in ?1 order by i.id ")
+    List<Item> lockAllById(Collection<Integer> ids);
+
+    // поиск возвращает Slice: страница отбирается на стороне БД
+    // (limit size + 1 для hasNext), count(*) не выполняется
     @Query(" select i from Item i "
             + "where ( upper(i.name) like upper(concat('%', ?1, '%')) "
             + " or upper(i.description) like upper(concat('%', ?1, '%')) )"
             + " and i.available = true "
             + "order by i.id asc ")
-    List<Item> search(String text);
+    Slice<Item> search(String text, Pageable page);
 
-    Integer countByOwner(int ownerId);
+    // продолжение поиска после вещи afterId (курсорный режим, для всех реализаций поиска в БД)
+    @Query(" select i from Item i "
+            + "where ( upper(i.name) like upper(concat('%', ?1, '%')) "
+            + " or upper(i.description) like upper(concat('%', ?1, '%')) )"
+            + " and i.available = true and i.id > ?2 "
+            + "order by i.id asc ")
+    List<Item> searchAfter(String text, int afterId, Pageable page);
 
-    List<Item> findByOwner(int owner);
+    // поиск вещей, свободных в периоде [?2, ?3): бронирования в статусах
+    // APPROVED и WAITING, пересекающиеся с периодом, отсекаются в том же
+    // запросе (not exists по индексу bookings (item_id, start_date))
+    @Query(" select i from Item i "
+            + "where ( upper(i.name) like upper(concat('%', ?1, '%')) "
+            + " or upper(i.description) like upper(concat('%', ?1, '%')) )"
+            + " and i.available = true "
+            + " and not exists ( select b.id from Booking b "
+            + "  where b.item = i.id and b.start < ?3 and b.end > ?2 "
+            + "  and b.status in (ru.practicum.shareit.booking.model.BookingStatus.APPROVED, "
+            + "                   ru.practicum.shareit.booking.model.BookingStatus.WAITING) ) "
+            + "order by i.id asc ")
+    Slice<Item> searchFree(String text, LocalDateTime start, LocalDateTime end, Pageable page);
+
+    @Query(" select i from Item i "
+            + "where ( upper(i.name) like upper(concat('%', ?1, '%')) "
+            + " or upper(i.description) like upper(concat('%', ?1, '%')) )"
+            + " and i.available = true and i.id > ?4 "
+            + " and not exists ( select b.id from Booking b "
+            + "  where b.item = i.id and b.start < ?3 and b.end > ?2 "
+            + "  and b.status in (ru.practicum.shareit.booking.model.BookingStatus.APPROVED, "
+            + "                   ru.practicum.shareit.booking.model.BookingStatus.WAITING) ) "
+            + "order by i.id asc ")
+    List<Item> searchFreeAfter(String text, LocalDateTime start, LocalDateTime end, int afterId, Pageable page);
+
+    // только для PostgreSQL: условие совпадает с search и покрывается
+    // индексами по upper(item_name) и upper(description) (pg_trgm),
+    // более похожие на запрос вещи идут первыми
+    @Query(value = "select i.* from items i "
+            + "where ( upper(i.item_name) like upper(concat('%', ?1, '%')) "
+            + " or upper(i.description) like upper(concat('%', ?1, '%')) )"
+            + " and i.is_available = true "
+            + "order by greatest(similarity(upper(i.item_name), upper(?1)), "
+            + "                  similarity(upper(i.description), upper(?1))) desc, i.id asc ",
+            nativeQuery = true)
+    Slice<Item> searchRanked(String text, Pageable page);
+
+    // подсказки по началу названия, если они не поместились в ItemSuggestStorage
+    // (в PostgreSQL - по индексу idx_items_name_lower);
+    // % и _ в prefix экранируются обратной косой чертой (ItemSuggestStorage.escapeLike)
+    @Query(" select new ru.practicum.shareit.item.dto.MinItemDto(i.id, i.name) from Item i "
+            + "where lower(i.name) like concat(?1, '%') escape '\\' and i.available = true "
+            + "order by lower(i.name) asc, i.id asc ")
+    List<MinItemDto> suggest(String prefix, Pageable page);
+
+    // выборка всех вещей порциями по возрастанию id
+    List<Item> findByIdGreaterThanOrderById(int id, Pageable page);
+
+    boolean existsByOwner(int ownerId);
 
     List<Item> findByOwnerOrderById(int owner);
 
+    // постраничный вывод доступных вещей владельца: по номеру страницы
+    // и по курсору (id последней вещи)
+    List<Item> findByOwnerAndAvailableTrueOrderById(int owner, Pageable page);
+
+    List<Item> findByOwnerAndAvailableTrueAndIdGreaterThanOrderById(int owner, int id, Pageable page);
+
+    // потоковая выборка вещей владельца порциями по 500 строк; вещи создаются
+    // конструктором, а не загружаются как сущности, и не накапливаются в контексте
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(" select new ru.practicum.shareit.item.model.Item(i.id, i.name, i.description, i.available, "
+            + "i.owner, i.requestId) from Item i "
+            + "where i.owner = ?1 "
+            + "order by i.id asc ")
+    Stream<Item> streamByOwner(int owner);
+
     List<Item> findByRequestIdOrderById(int requestId);
+
+    // вещи, созданные в ответ сразу на несколько запросов
+    List<Item> findByRequestIdInOrderById(Collection<Integer> requestIds);
 }
@@ -0,0 +1,369 @@
+package ru.practicum.shareit.item.storage;
+
+/*
+Инвертированный индекс по названию и описанию вещей в памяти.
+Текст приводится к нижнему регистру (одинаково для кириллицы и латиницы)
+и разбивается на триграммы, для каждой триграммы хранится
+отсортированный массив id вещей. Поиск пересекает массивы триграмм
+запроса и проверяет кандидатов на вхождение подстроки, поэтому
+результат совпадает с like-поиском по БД
+ */
+
+import ru.practicum.shareit.item.model.Item;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class ItemSearchIndex {
+    private static final int GRAM_LENGTH = 3;
+    private static final int[] EMPTY = new int[0];
+
+    // проиндексированные вещи по возрастанию id
+    private final TreeMap<Integer, Entry> entries = new TreeMap<>();
+    // триграмма -> отсортированные id вещей
+    private final Map<String, int[]> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // id вещей, измененных через put/remove во время сверки с БД (null - сверки нет)
+    private Set<Integer> touched;
+
+    public static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    // добавление новой или замена ранее проиндексированной вещи
+    // (по одной, при сохранении вещи; полная загрузка - через reset)
+    public void put(Item item) {
+        Entry entry = new Entry(copyOf(item));
+        lock.writeLock().lock();
+        try {
+            link(entry);
+            if (touched != null)
+                touched.add(item.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            unlink(id);
+            if (touched != null)
+                touched.add(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // начало сверки с БД (IndexItemSearchStorage.checkConsistency): вещи,
+    // измененные после этого вызова, сверка не трогает - прочитанная
+    // ею строка может оказаться старее записи в индексе
+    public void beginCheck() {
+        lock.writeLock().lock();
+        try {
+            touched = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void endCheck() {
+        lock.writeLock().lock();
+        try {
+            touched = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // исправление при сверке: вещь заменяется, если не менялась после beginCheck
+    public boolean repair(Item item) {
+        Entry entry = new Entry(copyOf(item));
+        lock.writeLock().lock();
+        try {
+            if (touched != null && touched.contains(item.getId()))
+                return false;
+            link(entry);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // то же для удаления вещи, которой уже нет в БД
+    public boolean repairRemove(int id) {
+        lock.writeLock().lock();
+        try {
+            if (touched != null && touched.contains(id))
+                return false;
+            unlink(id);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // полная замена содержимого индекса. Списки триграмм сначала
+    // накапливаются в растущих буферах и сортируются один раз в конце:
+    // вставка по одному id через insert копировала бы весь список
+    public void reset(Collection<Item> items) {
+        TreeMap<Integer, Entry> freshEntries = new TreeMap<>();
+        for (Item item : items) {
+            freshEntries.put(item.getId(), new Entry(copyOf(item)));
+        }
+
+        Map<String, IdBuffer> buffers = new HashMap<>();
+        for (Entry entry : freshEntries.values()) {
+            for (String gram : entry.grams) {
+                buffers.computeIfAbsent(gram, key -> new IdBuffer()).add(entry.item.getId());
+            }
+        }
+        Map<String, int[]> freshPostings = new HashMap<>(buffers.size() * 2);
+        buffers.forEach((gram, buffer) -> freshPostings.put(gram, buffer.toSortedArray()));
+
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            entries.putAll(freshEntries);
+            postings.clear();
+            postings.putAll(freshPostings);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // копия проиндексированной вещи или null
+    public Item get(int id) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            return entry == null ? null : copyOf(entry.item);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Set<Integer> ids() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(entries.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // доступные вещи, содержащие text в названии или описании, по возрастанию id;
+    // пропускается offset подходящих вещей, возвращается не больше limit
+    public List<Item> search(String text, long offset, int limit) {
+        return find(text, 0, offset, limit);
+    }
+
+    // то же, но только вещи с id больше afterId (курсорный режим)
+    public List<Item> searchAfter(String text, int afterId, int limit) {
+        return find(text, afterId, 0, limit);
+    }
+
+    private List<Item> find(String text, int afterId, long offset, int limit) {
+        String query = normalize(text);
+        List<Item> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Collection<Entry> candidates = candidates(query);
+            long skipped = 0;
+            for (Entry entry : candidates) {
+                if (result.size() >= limit)
+                    break;
+                if (entry.item.getId() <= afterId || !entry.matches(query))
+                    continue;
+                if (skipped < offset) {
+                    ++skipped;
+                    continue;
+                }
+                result.add(copyOf(entry.item));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    // запрос короче триграммы проверяется по всем вещам,
+    // иначе берется пересечение списков его триграмм
+    private Collection<Entry> candidates(String query) {
+        if (query.length() < GRAM_LENGTH)
+            return entries.values();
+
+        List<int[]> lists = new ArrayList<>();
+        for (String gram : grams(query)) {
+            int[] list = postings.get(gram);
+            if (list == null)
+                return List.of();
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.length));
+
+        int[] ids = lists.get(0);
+        for (int i = 1; i < lists.size() && ids.length > 0; i++) {
+            ids = intersect(ids, lists.get(i));
+        }
+
+        List<Entry> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(entries.get(id));
+        }
+        return result;
+    }
+
+    // добавление или замена записи; вызывается под блокировкой записи
+    private void link(Entry entry) {
+        int id = entry.item.getId();
+        Entry old = entries.put(id, entry);
+        if (old != null)
+            unlink(id, old.grams);
+        for (String gram : entry.grams) {
+            postings.put(gram, insert(postings.getOrDefault(gram, EMPTY), id));
+        }
+    }
+
+    private void unlink(int id) {
+        Entry old = entries.remove(id);
+        if (old != null)
+            unlink(id, old.grams);
+    }
+
+    private void unlink(int id, Set<String> grams) {
+        for (String gram : grams) {
+            int[] list = delete(postings.getOrDefault(gram, EMPTY), id);
+            if (list.length == 0)
+                postings.remove(gram);
+            else
+                postings.put(gram, list);
+        }
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            result.add(text.substring(i, i + GRAM_LENGTH));
+        }
+        return result;
+    }
+
+    private static int[] insert(int[] list, int id) {
+        int pos = Arrays.binarySearch(list, id);
+        if (pos >= 0)
+            return list;
+        pos = -pos - 1;
+        int[] result = new int[list.length + 1];
+        System.arraycopy(list, 0, result, 0, pos);
+        result[pos] = id;
+        System.arraycopy(list, pos, result, pos + 1, list.length - pos);
+        return result;
+    }
+
+    private static int[] delete(int[] list, int id) {
+        int pos = Arrays.binarySearch(list, id);
+        if (pos < 0)
+            return list;
+        int[] result = new int[list.length - 1];
+        System.arraycopy(list, 0, result, 0, pos);
+        System.arraycopy(list, pos + 1, result, pos, list.length - pos - 1);
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j])
+                ++i;
+            else if (a[i] > b[j])
+                ++j;
+            else {
+                result[k++] = a[i];
+                ++i;
+                ++j;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    // индекс хранит свои копии, чтобы изменения сущностей
+    // вне индекса не попадали в него без put
+    private static Item copyOf(Item item) {
+        return Item.builder()
+                .id(item.getId())
+                .name(item.getName())
+                .description(item.getDescription())
+                .available(item.getAvailable())
+                .owner(item.getOwner())
+                .requestId(item.getRequestId())
+                .build();
+    }
+
+    // растущий список id для reset; вещи обходятся по возрастанию id,
+    // но сортировка с удалением повторов не полагается на это
+    private static class IdBuffer {
+        private int[] ids = new int[4];
+        private int size = 0;
+
+        void add(int id) {
+            if (size == ids.length)
+                ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        int[] toSortedArray() {
+            int[] result = Arrays.copyOf(ids, size);
+            Arrays.sort(result);
+            int k = 0;
+            for (int i = 0; i < result.length; i++) {
+                if (k == 0 || result[k - 1] != result[i])
+                    result[k++] = result[i];
+            }
+            return k == result.length ? result : Arrays.copyOf(result, k);
+        }
+    }
+
+    private static class Entry {
+        private final Item item;
+        private final String name;
+        private final String description;
+        private final Set<String> grams;
+
+        Entry(Item item) {
+            this.item = item;
+            this.name = normalize(item.getName());
+            this.description = normalize(item.getDescription());
+            this.grams = grams(name);
+            this.grams.addAll(grams(description));
+        }
+
+        boolean matches(String query) {
+            return Boolean.TRUE.equals(item.getAvailable())
+                    && (name.contains(query) || description.contains(query));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ru.practicum.shareit.item.storage;
+
+/*
+Поиск доступных вещей по тексту в названии или описании.
+Реализация выбирается свойством shareit.search.mode
+ */
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import ru.practicum.shareit.item.model.Item;
+
+import java.util.List;
+
+public interface ItemSearchStorage {
+    Slice<Item> search(String text, Pageable page);
+
+    // не больше size вещей с id больше afterId по возрастанию id (курсорный режим)
+    List<Item> searchAfter(String text, int afterId, int size);
+
+    // уведомления о сохранении и удалении вещи
+    // для реализаций, держащих собственную копию данных
+    default void onSave(Item item) {
+    }
+
+    default void onDelete(int id) {
+    }
+}
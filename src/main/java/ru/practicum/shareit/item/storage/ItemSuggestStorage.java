@@ -0,0 +1,247 @@
+package ru.practicum.shareit.item.storage;
+
+/*
+Подсказки по началу названия вещи (/items/suggest).
+Названия доступных вещей в нижнем регистре хранятся в отсортированном
+массиве, поиск по префиксу - бинарный поиск и проход по соседним записям.
+Число записей ограничено shareit.suggest.max-entries; пока не все доступные
+вещи поместились, подсказки берутся из БД (по индексу idx_items_name_lower
+в PostgreSQL). Хранилище периодически перестраивается
+(shareit.suggest.rebuild-interval)
+ */
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.dto.MinItemDto;
+import ru.practicum.shareit.item.model.Item;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Slf4j
+@Component
+@EnableScheduling
+public class ItemSuggestStorage {
+    private static final int BATCH_SIZE = 500;
+
+    private final ItemRepository itemRepository;
+    private final int maxEntries;
+
+    // записи отсортированы по (keys[i], ids[i]), заняты первые size позиций
+    private String[] keys = new String[16];
+    private int[] ids = new int[16];
+    private String[] names = new String[16];
+    private int size = 0;
+    // id -> ключ записи, чтобы находить ее при изменении и удалении вещи
+    private Map<Integer, String> keyById = new HashMap<>();
+    // id доступных вещей, не поместившихся в ограничение; пока их нет,
+    // подсказки полные. Вещь уходит отсюда при удалении, отключении
+    // доступности или при изменении, если место освободилось.
+    // Хранится не больше maxEntries id, остальные не запоминаются
+    private Set<Integer> overflow = new HashSet<>();
+    // true, если id не поместились и в overflow: тогда подсказки
+    // берутся из БД до следующего перестроения
+    private boolean overflowLost = false;
+    // вещи, измененные во время перестроения (null - удаленные); применяются
+    // к новому состоянию, чтобы не потерять изменения, прочитанные из БД раньше них
+    private Map<Integer, Item> pending;
+
+    public ItemSuggestStorage(ItemRepository itemRepository,
+                              @Value("${shareit.suggest.max-entries:100000}") int maxEntries) {
+        this.itemRepository = itemRepository;
+        this.maxEntries = maxEntries;
+    }
+
+    // чтение из БД и сортировка идут без блокировки, чтобы не задерживать
+    // подсказки; записи сортируются один раз, затем подменяют старые
+    @PostConstruct
+    @Scheduled(initialDelayString = "${shareit.suggest.rebuild-interval:PT1H}",
+            fixedDelayString = "${shareit.suggest.rebuild-interval:PT1H}")
+    public void rebuild() {
+        synchronized (this) {
+            pending = new LinkedHashMap<>();
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        Set<Integer> freshOverflow = new HashSet<>();
+        boolean freshOverflowLost = false;
+        int lastId = 0;
+        List<Item> batch;
+        do {
+            batch = itemRepository.findByIdGreaterThanOrderById(lastId, PageRequest.of(0, BATCH_SIZE));
+            for (Item item : batch) {
+                lastId = item.getId();
+                if (!Boolean.TRUE.equals(item.getAvailable()))
+                    continue;
+                if (entries.size() < maxEntries)
+                    entries.add(new Entry(ItemSearchIndex.normalize(item.getName()), item.getId(), item.getName()));
+                else if (freshOverflow.size() < maxEntries)
+                    freshOverflow.add(item.getId());
+                else
+                    freshOverflowLost = true;
+            }
+        } while (batch.size() == BATCH_SIZE);
+
+        entries.sort(Comparator.comparing((Entry entry) -> entry.key).thenComparingInt(entry -> entry.id));
+        int capacity = Math.min(Math.max(entries.size(), 16), maxEntries);
+        String[] freshKeys = new String[capacity];
+        int[] freshIds = new int[capacity];
+        String[] freshNames = new String[capacity];
+        Map<Integer, String> freshKeyById = new HashMap<>();
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            freshKeys[i] = entry.key;
+            freshIds[i] = entry.id;
+            freshNames[i] = entry.name;
+            freshKeyById.put(entry.id, entry.key);
+        }
+
+        synchronized (this) {
+            keys = freshKeys;
+            ids = freshIds;
+            names = freshNames;
+            size = entries.size();
+            keyById = freshKeyById;
+            overflow = freshOverflow;
+            overflowLost = freshOverflowLost;
+            pending.forEach((id, item) -> {
+                if (item == null)
+                    delete(id);
+                else
+                    put(item);
+            });
+            pending = null;
+        }
+        log.info("Подсказки по названиям построены: записей {}, все вещи поместились: {}", entries.size(),
+                freshOverflow.isEmpty() && !freshOverflowLost);
+    }
+
+    // не больше limit доступных вещей, название которых начинается с prefix,
+    // в порядке названий
+    public List<MinItemDto> suggest(String prefix, int limit) {
+        String key = ItemSearchIndex.normalize(prefix);
+        synchronized (this) {
+            if (isComplete()) {
+                List<MinItemDto> result = new ArrayList<>();
+                for (int i = lowerBound(key, Integer.MIN_VALUE); i < size && result.size() < limit; i++) {
+                    if (!keys[i].startsWith(key))
+                        break;
+                    result.add(new MinItemDto(ids[i], names[i]));
+                }
+                return result;
+            }
+        }
+        return itemRepository.suggest(escapeLike(key), PageRequest.of(0, limit));
+    }
+
+    // префикс для like: символы шаблона % и _ ищутся как обычные символы
+    private static String escapeLike(String prefix) {
+        return prefix.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
+    public synchronized void onSave(Item item) {
+        put(item);
+        if (pending != null)
+            pending.put(item.getId(), item);
+    }
+
+    public synchronized void onDelete(int id) {
+        delete(id);
+        if (pending != null)
+            pending.put(id, null);
+    }
+
+    private void put(Item item) {
+        delete(item.getId());
+        if (!Boolean.TRUE.equals(item.getAvailable()))
+            return;
+        if (size >= maxEntries) {
+            if (overflow.size() < maxEntries)
+                overflow.add(item.getId());
+            else
+                overflowLost = true;
+            return;
+        }
+
+        String key = ItemSearchIndex.normalize(item.getName());
+        int pos = lowerBound(key, item.getId());
+        if (size == keys.length) {
+            int capacity = Math.min(Math.max(keys.length * 2, 16), maxEntries);
+            keys = Arrays.copyOf(keys, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        System.arraycopy(keys, pos, keys, pos + 1, size - pos);
+        System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+        System.arraycopy(names, pos, names, pos + 1, size - pos);
+        keys[pos] = key;
+        ids[pos] = item.getId();
+        names[pos] = item.getName();
+        ++size;
+        keyById.put(item.getId(), key);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isComplete() {
+        return overflow.isEmpty() && !overflowLost;
+    }
+
+    private void delete(int id) {
+        overflow.remove(id);
+        String key = keyById.remove(id);
+        if (key == null)
+            return;
+
+        int pos = lowerBound(key, id);
+        System.arraycopy(keys, pos + 1, keys, pos, size - pos - 1);
+        System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+        System.arraycopy(names, pos + 1, names, pos, size - pos - 1);
+        --size;
+        keys[size] = null;
+        names[size] = null;
+    }
+
+    // первая позиция, запись на которой не меньше (key, id)
+    private int lowerBound(String key, int id) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = keys[mid].compareTo(key);
+            if (cmp < 0 || (cmp == 0 && ids[mid] < id))
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private static class Entry {
+        private final String key;
+        private final int id;
+        private final String name;
+
+        Entry(String key, int id, String name) {
+            this.key = key;
+            this.id = id;
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ru.practicum.shareit.item.storage;
+
+/*
+Поиск через like по названию и описанию.
+Работает на любой БД, используется с H2 (профили test и ci)
+ */
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.model.Item;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+@Component
+@ConditionalOnProperty(name = "shareit.search.mode", havingValue = "like", matchIfMissing = true)
+public class LikeItemSearchStorage implements ItemSearchStorage {
+    private final ItemRepository itemRepository;
+
+    @Override
+    public Slice<Item> search(String text, Pageable page) {
+        return itemRepository.search(text, page);
+    }
+
+    @Override
+    public List<Item> searchAfter(String text, int afterId, int size) {
+        return itemRepository.searchAfter(text, afterId, PageRequest.of(0, size));
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum.shareit.item.storage;
+
+/*
+Поиск для PostgreSQL: те же условия, что и в like-поиске,
+но по триграммным GIN индексам (см. schema-postgresql.sql)
+и с сортировкой по степени сходства с запросом
+ */
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.item.model.Item;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+@Component
+@ConditionalOnProperty(name = "shareit.search.mode", havingValue = "trigram")
+public class TrigramItemSearchStorage implements ItemSearchStorage {
+    private final ItemRepository itemRepository;
+
+    @Override
+    public Slice<Item> search(String text, Pageable page) {
+        return itemRepository.searchRanked(text, page);
+    }
+
+    // ранжирование по сходству не сочетается с курсором по id,
+    // поэтому продолжение поиска идет в порядке id
+    @Override
+    public List<Item> searchAfter(String text, int afterId, int size) {
+        return itemRepository.searchAfter(text, afterId, PageRequest.of(0, size));
+    }
+}
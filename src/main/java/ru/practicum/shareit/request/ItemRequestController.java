@@ -3,6 +3,7 @@ package ru.practicum.shareit.request;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -20,8 +21,10 @@ import ru.practicum.shareit.request.exceptions.ItemRequestBadPageParams;
 import ru.practicum.shareit.request.exceptions.ItemRequestNotFoundException;
 import ru.practicum.shareit.request.service.ItemRequestService;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
+import ru.practicum.shareit.util.PageCursor;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
 
@@ -36,7 +39,9 @@ public class ItemRequestController {
     public ItemRequestDto postRequest(@RequestHeader("X-Sharer-User-Id") int userId,
                                       @RequestBody ItemRequestInputDto inputDto) {
         log.info("POST /requests userId=" + userId);
-        inputDto.setCreated(LocalDateTime.now());
+        // точность столбца TIMESTAMP - микросекунды: курсор, построенный
+        // по только что созданному запросу, должен совпасть с сохраненным значением
+        inputDto.setCreated(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
         return itemRequestService.addRequest(inputDto, userId);
     }
 
@@ -53,12 +58,21 @@ public class ItemRequestController {
         return itemRequestService.getAuthorRequests(userId);
     }
 
+    // постраничный вывод: по номеру страницы (from, size) или по курсору (cursor, size).
+    // В курсорном режиме, если страница заполнена, курсор следующей возвращается
+    // в заголовке X-Next-Cursor
     @GetMapping("/all")
-    public List<ItemRequestDto> getOtherUsersRequests(@RequestHeader("X-Sharer-User-Id") int userId,
-                                                      @RequestParam(required = false) Integer from,
-                                                      @RequestParam(required = false) Integer size) {
-        log.info("GET /requests/all userId=" + userId + " from=" + from + " size=" + size);
-        return itemRequestService.getOtherUsersRequests(userId, from, size);
+    public ResponseEntity<List<ItemRequestDto>> getOtherUsersRequests(
+            @RequestHeader("X-Sharer-User-Id") int userId,
+            @RequestParam(required = false) Integer from,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String cursor) {
+        log.info("GET /requests/all userId=" + userId + " from=" + from + " size=" + size + " cursor=" + cursor);
+
+        return PageCursor.toResponse(itemRequestService.getOtherUsersRequests(userId, from, size, cursor),
+                cursor,
+                size,
+                request -> new PageCursor(request.getCreated(), request.getId()));
     }
 
     @ExceptionHandler(ItemRequestBadDataException.class)
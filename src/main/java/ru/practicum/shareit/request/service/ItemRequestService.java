@@ -12,5 +12,7 @@ public interface ItemRequestService {
 
     List<ItemRequestDto> getAuthorRequests(int userId);
 
-    List<ItemRequestDto> getOtherUsersRequests(int userId, Integer from, Integer size);
+    // cursor - курсор из заголовка X-Next-Cursor предыдущей страницы
+    // (пустая строка - первая страница), несовместим с from
+    List<ItemRequestDto> getOtherUsersRequests(int userId, Integer from, Integer size, String cursor);
 }
@@ -2,10 +2,6 @@ package ru.practicum.shareit.request.service;
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemDtoMapper;
@@ -20,11 +16,13 @@ import ru.practicum.shareit.request.exceptions.ItemRequestNotFoundException;
 import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.request.storage.ItemRequestRepository;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
-import ru.practicum.shareit.user.storage.UserRepository;
+import ru.practicum.shareit.user.storage.UserIdIndex;
+import ru.practicum.shareit.util.PageParams;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -33,12 +31,12 @@ import java.util.stream.Collectors;
 @Component
 public class ItemRequestServiceImpl implements ItemRequestService {
     private final ItemRequestRepository itemRequestRepository;
-    private final UserRepository userRepository;
+    private final UserIdIndex userIdIndex;
     private final ItemRepository itemRepository;
 
     @Override
     public ItemRequestDto addRequest(ItemRequestInputDto inputDto, int userId) {
-        if (!userRepository.existsById(userId))
+        if (!userIdIndex.exists(userId))
             throw new UserNotFoundException("Пользователь " + userId + " не найден");
         if (inputDto.getDescription() == null || inputDto.getDescription().equals(""))
             throw new ItemRequestBadDataException("Пустое описание в новом запросе от пользователя " + userId);
@@ -49,7 +47,7 @@ public class ItemRequestServiceImpl implements ItemRequestService {
 
     @Override
     public ItemRequestDto getRequest(int id, int userId) {
-        if (!userRepository.existsById(userId))
+        if (!userIdIndex.exists(userId))
             throw new UserNotFoundException("Пользователь " + userId + " не найден");
 
         Optional<ItemRequest> tempRequest = itemRequestRepository.findById(id);
@@ -67,54 +65,53 @@ public class ItemRequestServiceImpl implements ItemRequestService {
 
     @Override
     public List<ItemRequestDto> getAuthorRequests(int userId) {
-        if (!userRepository.existsById(userId))
+        if (!userIdIndex.exists(userId))
             throw new UserNotFoundException("Пользователь " + userId + " не найден");
 
         List<ItemRequest> tempRequestList = itemRequestRepository.findByAuthorOrderByCreatedDesc(userId);
-        List<ItemRequestDto> result = new ArrayList<>();
-        for (ItemRequest itemRequest : tempRequestList) {
-            List<Item> tempItemList = itemRepository.findByRequestIdOrderById(itemRequest.getId());
-            List<ItemDto> subResult = new ArrayList<>();
-            for (Item item : tempItemList) {
-                subResult.add(ItemDtoMapper.toItemDto(item));
-            }
-
-            result.add(ItemRequestDtoMapper.toItemRequestDto(itemRequest, subResult));
-        }
-
-        return result;
+        return toItemRequestDtoList(tempRequestList);
     }
 
     @Override
-    public List<ItemRequestDto> getOtherUsersRequests(int userId, Integer from, Integer size) {
-        if (!userRepository.existsById(userId))
+    public List<ItemRequestDto> getOtherUsersRequests(int userId, Integer from, Integer size, String cursor) {
+        if (!userIdIndex.exists(userId))
             throw new UserNotFoundException("Пользователь " + userId + " не найден");
 
+        PageParams params = PageParams.of(from, size, cursor, ItemRequestBadPageParams::new);
+        // курсор списка запросов содержит время создания последнего запроса
+        if (params.hasCursor() && params.getCursor().getTime() == null)
+            throw new ItemRequestBadPageParams("Некорректный курсор: " + cursor);
+
         List<ItemRequest> tempRequestList;
 
-        if (from == null && size == null)
-            tempRequestList = itemRequestRepository.findByAuthorNotInOrderByCreatedDesc(Collections.singletonList(userId));
-        else if (from == null || size == null || from < 0 || size <= 0)
-            throw new ItemRequestBadPageParams("Параметры: from=" + from + " size=" + size);
-        else {
-            Sort sortByCreated = Sort.by(Sort.Direction.DESC, "created");
-            Pageable page = PageRequest.of(from, size, sortByCreated);
-            Page<ItemRequest> requestPage = itemRequestRepository.findAll(page);
-
-            tempRequestList = requestPage.get()
-                    .filter(itemRequest -> itemRequest.getAuthor() != userId)
-                    .collect(Collectors.toList());
-        }
+        if (params.hasCursor())
+            tempRequestList = itemRequestRepository.findOtherUsersRequestsAfter(userId,
+                    params.getCursor().getTime(), params.getCursor().getId(), params.toPageable());
+        else
+            tempRequestList = itemRequestRepository.findOtherUsersRequests(userId, params.toPageable());
+
+        return toItemRequestDtoList(tempRequestList);
+    }
 
+    // метод, собирающий ответы сразу на все запросы из списка:
+    // вещи запрашиваются одним запросом и группируются по id запроса
+    private List<ItemRequestDto> toItemRequestDtoList(List<ItemRequest> itemRequests) {
         List<ItemRequestDto> result = new ArrayList<>();
-        for (ItemRequest itemRequest : tempRequestList) {
-            List<Item> tempItemList = itemRepository.findByRequestIdOrderById(itemRequest.getId());
-            List<ItemDto> subResult = new ArrayList<>();
-            for (Item item : tempItemList) {
-                subResult.add(ItemDtoMapper.toItemDto(item));
-            }
-
-            result.add(ItemRequestDtoMapper.toItemRequestDto(itemRequest, subResult));
+        if (itemRequests.isEmpty())
+            return result;
+
+        List<Integer> requestIds = itemRequests.stream()
+                .map(ItemRequest::getId)
+                .collect(Collectors.toList());
+        Map<Integer, List<ItemDto>> items = new HashMap<>();
+        for (Item item : itemRepository.findByRequestIdInOrderById(requestIds)) {
+            items.computeIfAbsent(item.getRequestId(), id -> new ArrayList<>())
+                    .add(ItemDtoMapper.toItemDto(item));
+        }
+
+        for (ItemRequest itemRequest : itemRequests) {
+            result.add(ItemRequestDtoMapper.toItemRequestDto(itemRequest,
+                    items.getOrDefault(itemRequest.getId(), new ArrayList<>())));
         }
 
         return result;
@@ -1,14 +1,28 @@
 package ru.practicum.shareit.request.storage;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import ru.practicum.shareit.request.model.ItemRequest;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface ItemRequestRepository extends JpaRepository<ItemRequest, Integer> {
     List<ItemRequest> findByAuthorOrderByCreatedDesc(int userId);
 
-    List<ItemRequest> findByAuthorNotInOrderByCreatedDesc(List<Integer> otherIds);
+    // запросы других пользователей, новые первыми;
+    // отбор и постраничный вывод на стороне БД (индекс idx_requests_created)
+    @Query(" select r from ItemRequest r "
+            + "where r.author <> ?1 "
+            + "order by r.created desc, r.id desc ")
+    List<ItemRequest> findOtherUsersRequests(int userId, Pageable page);
+
+    // то же, но по ключу: запросы, идущие после (created, id) последнего выданного
+    @Query(" select r from ItemRequest r "
+            + "where r.author <> ?1 and (r.created < ?2 or (r.created = ?2 and r.id < ?3)) "
+            + "order by r.created desc, r.id desc ")
+    List<ItemRequest> findOtherUsersRequestsAfter(int userId, LocalDateTime created, int id, Pageable page);
 }
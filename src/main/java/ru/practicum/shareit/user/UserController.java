@@ -1,8 +1,11 @@
 package ru.practicum.shareit.user;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,13 +14,18 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.exceptions.UserBadPageParamsException;
 import ru.practicum.shareit.user.exceptions.UserDataConflictException;
 import ru.practicum.shareit.user.exceptions.UserIncompleteDataException;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
 import ru.practicum.shareit.user.service.UserService;
+import ru.practicum.shareit.util.PageCursor;
+import ru.practicum.shareit.util.ResultStream;
 
 import javax.validation.Valid;
 import java.util.List;
@@ -29,6 +37,7 @@ import java.util.Map;
 @RequestMapping(path = "/users")
 public class UserController {
     private final UserService userService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public UserDto postUser(@Valid @RequestBody UserDto userDto) {
@@ -48,10 +57,39 @@ public class UserController {
         return userService.getUser(userId);
     }
 
-    @GetMapping
-    public List<UserDto> getAllUsers() {
+    // без параметров страницы весь список записывается в ответ по мере чтения из БД
+    @GetMapping(params = {"!size", "!from", "!cursor"})
+    public ResponseEntity<StreamingResponseBody> getAllUsers() {
         log.info("GET /users получен список пользователей");
-        return userService.getAllUsers();
+        return ResultStream.toJsonArrayResponse(userService.streamAllUsers(), objectMapper);
+    }
+
+    // постраничный вывод: по номеру страницы (from, size) или по курсору (cursor, size),
+    // в курсорном режиме курсор следующей страницы возвращается в заголовке X-Next-Cursor
+    @GetMapping(params = "size")
+    public ResponseEntity<List<UserDto>> getUsersPage(@RequestParam(required = false) Integer from,
+                                                      @RequestParam Integer size,
+                                                      @RequestParam(required = false) String cursor) {
+        log.info("GET /users from=" + from + " size=" + size + " cursor=" + cursor);
+        return PageCursor.toResponse(userService.getAllUsers(from, size, cursor),
+                cursor,
+                size,
+                user -> new PageCursor(user.getId()));
+    }
+
+    // from или cursor без size: параметры проверяет сервис, ответ 400
+    // с описанием ошибки, как у остальных списков
+    @GetMapping(params = "!size")
+    public ResponseEntity<List<UserDto>> getUsersPageWithoutSize(@RequestParam(required = false) Integer from,
+                                                                 @RequestParam(required = false) String cursor) {
+        return getUsersPage(from, null, cursor);
+    }
+
+    // потоковая выдача всех пользователей (Accept: application/x-ndjson)
+    @GetMapping(params = {"!size", "!from", "!cursor"}, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        log.info("GET /users (ndjson) получен список пользователей");
+        return ResultStream.toNdjsonResponse(userService.streamAllUsers(), objectMapper);
     }
 
     @DeleteMapping("/{userId}")
@@ -66,6 +104,12 @@ public class UserController {
         return Map.of("error", e.getMessage());
     }
 
+    @ExceptionHandler(UserBadPageParamsException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleBadPageParams(UserBadPageParamsException e) {
+        return Map.of("error", e.getMessage());
+    }
+
     @ExceptionHandler(UserIncompleteDataException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleIncompleteData(UserIncompleteDataException e) {
@@ -5,12 +5,14 @@ package ru.practicum.shareit.user.dto;
     для сокращения объемов передач
 */
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
 import javax.validation.constraints.Email;
 
 @Data
+@AllArgsConstructor
 @Builder
 public class UserDto {
     private int id;
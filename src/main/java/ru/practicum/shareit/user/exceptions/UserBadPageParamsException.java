@@ -0,0 +1,7 @@
+package ru.practicum.shareit.user.exceptions;
+
+public class UserBadPageParamsException extends RuntimeException {
+    public UserBadPageParamsException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,7 @@
 package ru.practicum.shareit.user.service;
 
 import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.util.ResultStream;
 
 import java.util.List;
 
@@ -9,7 +10,11 @@ public interface UserService {
 
     UserDto getUser(int id);
 
-    List<UserDto> getAllUsers();
+    // страница списка: from и size или cursor и size (см. PageParams)
+    List<UserDto> getAllUsers(Integer from, Integer size, String cursor);
+
+    // все пользователи для потоковой выдачи
+    ResultStream<UserDto> streamAllUsers();
 
     UserDto updateUser(UserDto userDto, int id);
 
@@ -8,23 +8,33 @@ package ru.practicum.shareit.user.service;
 
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.dto.UserDtoMapper;
+import ru.practicum.shareit.user.exceptions.UserBadPageParamsException;
 import ru.practicum.shareit.user.exceptions.UserIncompleteDataException;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
 import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserIdIndex;
 import ru.practicum.shareit.user.storage.UserRepository;
+import ru.practicum.shareit.util.PageParams;
+import ru.practicum.shareit.util.ResultStream;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RequiredArgsConstructor
 @Getter
 @Component
 public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
+    private final UserIdIndex userIdIndex;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
     public UserDto addUser(UserDto userDto) {
@@ -33,7 +43,9 @@ public class UserServiceImpl implements UserService {
         if (userDto.getEmail() == null || userDto.getEmail().equals(""))
             throw new UserIncompleteDataException("Пустая почта");
 
-        return UserDtoMapper.toUserDto(userRepository.save(UserDtoMapper.toUser(userDto)));
+        User saved = userRepository.save(UserDtoMapper.toUser(userDto));
+        userIdIndex.add(saved.getId());
+        return UserDtoMapper.toUserDto(saved);
     }
 
     @Override
@@ -46,18 +58,30 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public List<UserDto> getAllUsers() {
-        List<User> temp = userRepository.findAll();
-        List<UserDto> result = new ArrayList<>();
-
-        for (User user : temp) {
-            result.add(UserDtoMapper.toUserDto(user));
-        }
+    public List<UserDto> getAllUsers(Integer from, Integer size, String cursor) {
+        PageParams params = PageParams.of(from, size, cursor, UserBadPageParamsException::new);
+        List<User> temp;
+        if (params.hasCursor())
+            temp = userRepository.findByIdGreaterThanOrderById(params.getCursor().getId(), params.toPageable());
+        else
+            temp = userRepository.findAllByOrderById(params.toPageable());
+
+        return temp.stream()
+                .map(UserDtoMapper::toUserDto)
+                .collect(Collectors.toList());
+    }
 
-        return result;
+    @Override
+    public ResultStream<UserDto> streamAllUsers() {
+        return action -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<UserDto> users = userRepository.streamAll()) {
+                users.forEach(action);
+            }
+        });
     }
 
     @Override
+    @CacheEvict(cacheNames = "users", key = "#id")
     public UserDto updateUser(UserDto userDto, int id) {
         Optional<User> temp = userRepository.findById(id);
         if (temp.isEmpty())
@@ -73,10 +97,15 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = "users", key = "#id"),
+            @CacheEvict(cacheNames = "userExists", key = "#id")
+    })
     public void deleteUser(int id) {
-        if (!userRepository.existsById(id))
+        if (!userIdIndex.exists(id))
             throw new UserNotFoundException("Пользователь " + id + " не найден");
 
         userRepository.deleteById(id);
+        userIdIndex.remove(id);
     }
 }
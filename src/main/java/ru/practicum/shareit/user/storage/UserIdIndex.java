@@ -0,0 +1,58 @@
+package ru.practicum.shareit.user.storage;
+
+/*
+Множество id существующих пользователей в памяти (BitSet).
+Заполняется из БД при старте и обновляется в UserServiceImpl.addUser/deleteUser.
+Если id в множестве нет, проверка идет в БД: пользователь мог быть
+добавлен через другой экземпляр приложения
+ */
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.BitSet;
+import java.util.List;
+
+@RequiredArgsConstructor
+@Slf4j
+@Component
+public class UserIdIndex {
+    private final UserRepository userRepository;
+    private final BitSet ids = new BitSet();
+
+    @PostConstruct
+    public void load() {
+        List<Integer> allIds = userRepository.findAllIds();
+        synchronized (this) {
+            ids.clear();
+            allIds.forEach(this::add);
+        }
+        log.info("Загружены id пользователей: {}", allIds.size());
+    }
+
+    public boolean exists(int id) {
+        if (contains(id))
+            return true;
+        if (!userRepository.existsById(id))
+            return false;
+
+        add(id);
+        return true;
+    }
+
+    public synchronized boolean contains(int id) {
+        return id >= 0 && ids.get(id);
+    }
+
+    public synchronized void add(int id) {
+        if (id >= 0)
+            ids.set(id);
+    }
+
+    public synchronized void remove(int id) {
+        if (id >= 0)
+            ids.clear(id);
+    }
+}
@@ -1,9 +1,47 @@
 package ru.practicum.shareit.user.storage;
 
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.model.User;
 
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
 @Repository
 public interface UserRepository extends JpaRepository<User, Integer> {
+    // пользователи читаются намного чаще, чем меняются, поэтому поиск по id
+    // и проверка существования кэшируются (кэши users и userExists).
+    // Отсутствие пользователя не кэшируется, кэш сбрасывается
+    // в UserServiceImpl.updateUser/deleteUser
+    @Override
+    @Cacheable(cacheNames = "users", key = "#p0", unless = "#result == null")
+    Optional<User> findById(Integer id);
+
+    @Override
+    @Cacheable(cacheNames = "userExists", key = "#p0", unless = "!#result")
+    boolean existsById(Integer id);
+
+    @Query("select u.id from User u")
+    List<Integer> findAllIds();
+
+    // постраничный вывод по возрастанию id: по номеру страницы и по курсору (id последнего)
+    List<User> findAllByOrderById(Pageable page);
+
+    List<User> findByIdGreaterThanOrderById(int id, Pageable page);
+
+    // потоковая выборка всех пользователей порциями по 500 строк,
+    // сразу в виде dto, без загрузки сущностей
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(" select new ru.practicum.shareit.user.dto.UserDto(u.id, u.name, u.email) from User u "
+            + "order by u.id asc ")
+    Stream<UserDto> streamAll();
 }
@@ -0,0 +1,66 @@
+package ru.practicum.shareit.util;
+
+/*
+Курсор для постраничного вывода списков.
+Хранит ключ сортировки последнего выданного элемента (время, если список
+отсортирован по нему, и id) и передается клиенту непрозрачной строкой
+в заголовке X-Next-Cursor. Следующая страница запрашивается по ключу,
+поэтому ее стоимость не зависит от глубины прокрутки
+ */
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@AllArgsConstructor
+public class PageCursor {
+    public static final String HEADER = "X-Next-Cursor";
+
+    // null для списков, отсортированных только по id
+    private LocalDateTime time;
+    private int id;
+
+    public PageCursor(int id) {
+        this(null, id);
+    }
+
+    public String encode() {
+        String raw = (time == null ? "" : time.toString()) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // при ошибке разбора возвращается null
+    public static PageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            String time = raw.substring(0, separator);
+            return new PageCursor("".equals(time) ? null : LocalDateTime.parse(time),
+                    Integer.parseInt(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // ответ со страницей списка; cursor и size - параметры из запроса, уже
+    // проверенные сервисом. Курсор следующей страницы передается в заголовке
+    // только в курсорном режиме (cursor != null) и только если страница
+    // заполнена: в режиме from/size порядок может быть другим (поиск
+    // упорядочен по релевантности), и курсор по id в нем не имеет смысла
+    public static <T> ResponseEntity<List<T>> toResponse(List<T> page, String cursor, Integer size,
+                                                         Function<T, PageCursor> cursorOf) {
+        if (cursor == null || size == null || page.isEmpty() || page.size() < size)
+            return ResponseEntity.ok(page);
+        return ResponseEntity.ok()
+                .header(HEADER, cursorOf.apply(page.get(page.size() - 1)).encode())
+                .body(page);
+    }
+}
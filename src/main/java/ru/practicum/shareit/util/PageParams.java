@@ -0,0 +1,69 @@
+package ru.practicum.shareit.util;
+
+/*
+Параметры постраничного вывода, общие для всех списков:
+- без параметров - весь список;
+- from и size - страница номер from размером size;
+- cursor и size - size элементов после курсора (пустой курсор - первая страница).
+Ошибка в параметрах создается переданной фабрикой, чтобы каждый
+контроллер обрабатывал исключение своего пакета
+ */
+
+import lombok.Getter;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.function.Function;
+
+@Getter
+public class PageParams {
+    private final Integer from;
+    private final Integer size;
+    private final boolean cursorMode;
+    // null, если курсор не передан или пустой
+    private final PageCursor cursor;
+
+    private PageParams(Integer from, Integer size, boolean cursorMode, PageCursor cursor) {
+        this.from = from;
+        this.size = size;
+        this.cursorMode = cursorMode;
+        this.cursor = cursor;
+    }
+
+    public static PageParams of(Integer from, Integer size, String cursor,
+                                Function<String, ? extends RuntimeException> error) {
+        if (cursor != null) {
+            if (from != null || size == null || size <= 0)
+                throw error.apply("Параметры: from=" + from + " size=" + size + " cursor=" + cursor);
+            if ("".equals(cursor))
+                return new PageParams(null, size, true, null);
+
+            PageCursor decoded = PageCursor.decode(cursor);
+            if (decoded == null)
+                throw error.apply("Некорректный курсор: " + cursor);
+            return new PageParams(null, size, true, decoded);
+        }
+
+        if (from == null && size == null)
+            return new PageParams(null, null, false, null);
+        if (from == null || size == null || from < 0 || size <= 0)
+            throw error.apply("Параметры: from=" + from + " size=" + size);
+        return new PageParams(from, size, false, null);
+    }
+
+    public boolean isUnpaged() {
+        return size == null;
+    }
+
+    // курсорный режим, и курсор уже есть (не первая страница)
+    public boolean hasCursor() {
+        return cursor != null;
+    }
+
+    // в курсорном режиме страница всегда первая: смещение задается условием по ключу
+    public Pageable toPageable() {
+        if (isUnpaged())
+            return Pageable.unpaged();
+        return PageRequest.of(cursorMode ? 0 : from, size);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.practicum.shareit.util;
+
+/*
+Отложенная выборка списка для потоковой выдачи (application/x-ndjson).
+Сервис проверяет параметры сразу и возвращает ResultStream, а строки
+читаются из БД только в forEach: по одной, с размером порции JDBC
+из подсказки fetch size, и сразу передаются в action.
+Память, занятая ответом, не зависит от числа строк
+ */
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+@FunctionalInterface
+public interface ResultStream<T> {
+    void forEach(Consumer<? super T> action);
+
+    // ответ в формате NDJSON: каждый dto - отдельная строка JSON,
+    // записывается в ответ сразу после чтения из БД
+    static <T> ResponseEntity<StreamingResponseBody> toNdjsonResponse(ResultStream<T> stream,
+                                                                      ObjectMapper objectMapper) {
+        return toResponse(stream, objectMapper, MediaType.APPLICATION_NDJSON, false);
+    }
+
+    // то же в виде обычного массива JSON
+    static <T> ResponseEntity<StreamingResponseBody> toJsonArrayResponse(ResultStream<T> stream,
+                                                                         ObjectMapper objectMapper) {
+        return toResponse(stream, objectMapper, MediaType.APPLICATION_JSON, true);
+    }
+
+    private static <T> ResponseEntity<StreamingResponseBody> toResponse(ResultStream<T> stream,
+                                                                        ObjectMapper objectMapper,
+                                                                        MediaType mediaType, boolean array) {
+        StreamingResponseBody body = out -> {
+            boolean[] first = {true};
+            try {
+                if (array)
+                    out.write('[');
+                stream.forEach(dto -> {
+                    try {
+                        if (array && !first[0])
+                            out.write(',');
+                        out.write(objectMapper.writeValueAsBytes(dto));
+                        if (!array)
+                            out.write('\n');
+                        first[0] = false;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                if (array)
+                    out.write(']');
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .body(body);
+    }
+}
@@ -0,0 +1,37 @@
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_items_name_trgm ON items USING GIN (upper(item_name) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_items_description_trgm ON items USING GIN (upper(description) gin_trgm_ops);
+
+-- подсказки по началу названия из БД (ItemRepository.suggest, lower(name) like 'префикс%'),
+-- text_pattern_ops позволяет искать по префиксу при любой локали БД
+CREATE INDEX IF NOT EXISTS idx_items_name_lower ON items (lower(item_name) text_pattern_ops);
+
+-- ограничения, добавленные после создания таблицы bookings, создаются один раз:
+-- у ADD CONSTRAINT нет IF NOT EXISTS, поэтому наличие проверяется по pg_constraint.
+-- Тело DO записано в одинарных кавычках, а не в $$: загрузчик скриптов Spring
+-- делит скрипт по ';' и учитывает только обычные кавычки
+DO 'BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = ''chk_bookings_status'') THEN
+        ALTER TABLE bookings ADD CONSTRAINT chk_bookings_status
+            CHECK (status IN (''WAITING'', ''APPROVED'', ''REJECTED'', ''CANCELED''));
+    END IF;
+END';
+
+-- одобренные бронирования одной вещи не пересекаются: [start_date, end_date)
+-- с полуоткрытыми границами, как и проверка в BookingServiceImpl.
+-- Если в старых данных уже есть пересечения, ограничение не создается,
+-- а в журнал БД пишется предупреждение: старт приложения не прерывается
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+DO 'BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = ''excl_bookings_item_period'') THEN
+        ALTER TABLE bookings ADD CONSTRAINT excl_bookings_item_period
+            EXCLUDE USING gist (item_id WITH =, tsrange(start_date, end_date) WITH &&)
+            WHERE (status = ''APPROVED'');
+    END IF;
+EXCEPTION
+    WHEN exclusion_violation THEN
+        RAISE WARNING ''excl_bookings_item_period не создано: есть пересекающиеся одобренные бронирования'';
+END';
@@ -35,9 +35,22 @@ CREATE TABLE IF NOT EXISTS bookings
     item_id    INTEGER                     NOT NULL REFERENCES items (id),
     booker_id  INTEGER                     NOT NULL REFERENCES users (id),
     status     VARCHAR(8)                  NOT NULL,
-    CONSTRAINT pk_booking PRIMARY KEY (id)
+    version    INTEGER                     NOT NULL DEFAULT 0,
+    CONSTRAINT pk_booking PRIMARY KEY (id),
+    CONSTRAINT chk_bookings_status CHECK (status IN ('WAITING', 'APPROVED', 'REJECTED', 'CANCELED'))
 );
 
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS version INTEGER NOT NULL DEFAULT 0;
+
+-- раньше статус хранился номером значения BookingStatus; повторный запуск ничего не меняет
+UPDATE bookings
+SET status = CASE status
+                 WHEN '0' THEN 'WAITING'
+                 WHEN '1' THEN 'APPROVED'
+                 WHEN '2' THEN 'REJECTED'
+                 WHEN '3' THEN 'CANCELED' END
+WHERE status IN ('0', '1', '2', '3');
+
 CREATE TABLE IF NOT EXISTS requests
 (
     id          INTEGER                     NOT NULL GENERATED BY DEFAULT AS IDENTITY,
@@ -45,4 +58,16 @@ CREATE TABLE IF NOT EXISTS requests
     created     TIMESTAMP WITHOUT TIME ZONE NOT NULL,
     author      INTEGER                     NOT NULL REFERENCES users (id),
     CONSTRAINT pk_request PRIMARY KEY (id)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS idx_bookings_booker_start ON bookings (booker_id, start_date DESC);
+
+CREATE INDEX IF NOT EXISTS idx_items_owner ON items (owner_id);
+
+CREATE INDEX IF NOT EXISTS idx_bookings_item_start ON bookings (item_id, start_date);
+
+CREATE INDEX IF NOT EXISTS idx_comments_item ON comments (item);
+
+CREATE INDEX IF NOT EXISTS idx_items_request ON items (request_id);
+
+CREATE INDEX IF NOT EXISTS idx_requests_created ON requests (created DESC, id DESC);
@@ -0,0 +1,139 @@
+package ru.practicum.shareit.booking;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.booking.dto.BookingPeriodDto;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.storage.BookingAvailabilityStorage;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BookingAvailabilityStorageTest {
+    BookingRepository bookingRepository = mock(BookingRepository.class);
+
+    LocalDateTime day = LocalDateTime.of(2100, 6, 29, 0, 0);
+
+    private Booking booking(int id, int item, int fromHour, int toHour, BookingStatus status) {
+        return Booking.builder()
+                .id(id)
+                .item(item)
+                .booker(1)
+                .start(day.plusHours(fromHour))
+                .end(day.plusHours(toHour))
+                .status(status)
+                .build();
+    }
+
+    private List<Integer> ids(List<BookingPeriodDto> periods) {
+        return periods.stream()
+                .map(BookingPeriodDto::getBookingId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void findBusyTest() throws Exception {
+        when(bookingRepository.findByStatusAndEndAfterAndIdGreaterThanOrderById(eq(BookingStatus.APPROVED), any(),
+                eq(0), any()))
+                .thenReturn(List.of(booking(3, 1, 12, 14, BookingStatus.APPROVED),
+                        booking(1, 1, 8, 10, BookingStatus.APPROVED),
+                        booking(2, 1, 10, 11, BookingStatus.APPROVED),
+                        booking(4, 2, 8, 20, BookingStatus.APPROVED)));
+
+        BookingAvailabilityStorage storage = new BookingAvailabilityStorage(bookingRepository);
+        storage.rebuild();
+        assertEquals(4, storage.size());
+
+        assertEquals(List.of(1, 2, 3), ids(storage.findBusy(1, day, day.plusDays(1))));
+        assertEquals(List.of(2, 3), ids(storage.findBusy(1, day.plusHours(10), day.plusHours(13))));
+        // границы полуоткрытые: смежные периоды не пересекаются
+        assertTrue(storage.findBusy(1, day.plusHours(11), day.plusHours(12)).isEmpty());
+        assertTrue(storage.findBusy(1, day.plusHours(14), day.plusHours(15)).isEmpty());
+        assertEquals(List.of(4), ids(storage.findBusy(2, day.plusHours(9), day.plusHours(10))));
+        assertTrue(storage.findBusy(3, day, day.plusDays(1)).isEmpty());
+    }
+
+    @Test
+    void onSaveTest() throws Exception {
+        BookingAvailabilityStorage storage = new BookingAvailabilityStorage(bookingRepository);
+        storage.rebuild();
+
+        storage.onSave(booking(1, 1, 8, 10, BookingStatus.WAITING));
+        assertTrue(storage.findBusy(1, day, day.plusDays(1)).isEmpty());
+
+        storage.onSave(booking(1, 1, 8, 10, BookingStatus.APPROVED));
+        storage.onSave(booking(2, 1, 12, 14, BookingStatus.APPROVED));
+        assertEquals(List.of(1, 2), ids(storage.findBusy(1, day, day.plusDays(1))));
+
+        // отклонение одобренного бронирования освобождает период
+        storage.onSave(booking(1, 1, 8, 10, BookingStatus.REJECTED));
+        assertEquals(List.of(2), ids(storage.findBusy(1, day, day.plusDays(1))));
+        assertEquals(1, storage.size());
+    }
+
+    @Test
+    void findBusyPrecisionTest() throws Exception {
+        BookingAvailabilityStorage storage = new BookingAvailabilityStorage(bookingRepository);
+        storage.rebuild();
+
+        // время не округляется до секунд
+        Booking booking = booking(1, 1, 8, 10, BookingStatus.APPROVED);
+        booking.setEnd(booking.getEnd().plusNanos(500_000));
+        storage.onSave(booking);
+
+        assertEquals(List.of(1), ids(storage.findBusy(1, day.plusHours(10), day.plusHours(11))));
+        assertEquals(booking.getEnd(), storage.findBusy(1, day, day.plusDays(1)).get(0).getEnd());
+        assertTrue(storage.findBusy(1, day.plusHours(10).plusNanos(500_000), day.plusHours(11)).isEmpty());
+    }
+
+    @Test
+    void rebuildTest() throws Exception {
+        when(bookingRepository.findByStatusAndEndAfterAndIdGreaterThanOrderById(eq(BookingStatus.APPROVED), any(),
+                eq(0), any()))
+                .thenReturn(List.of(booking(1, 1, 8, 10, BookingStatus.APPROVED)))
+                .thenReturn(List.of(booking(2, 1, 12, 14, BookingStatus.APPROVED)));
+
+        BookingAvailabilityStorage storage = new BookingAvailabilityStorage(bookingRepository);
+        storage.rebuild();
+        assertEquals(List.of(1), ids(storage.findBusy(1, day, day.plusDays(1))));
+
+        // перезагрузка заменяет состояние тем, что есть в БД
+        storage.rebuild();
+        assertEquals(List.of(2), ids(storage.findBusy(1, day, day.plusDays(1))));
+        assertEquals(1, storage.size());
+    }
+
+    @Test
+    void findBusyBeforeLoadTest() throws Exception {
+        BookingAvailabilityStorage storage = new BookingAvailabilityStorage(bookingRepository);
+        storage.rebuild();
+
+        // закончившиеся до загрузки бронирования в памяти не хранятся,
+        // периоды в прошлом читаются из БД
+        LocalDateTime past = LocalDateTime.of(2000, 1, 1, 0, 0);
+        Booking old = Booking.builder()
+                .id(5)
+                .item(1)
+                .booker(1)
+                .start(past.plusHours(1))
+                .end(past.plusHours(2))
+                .status(BookingStatus.APPROVED)
+                .build();
+        when(bookingRepository.findByItemInAndStatusAndStartBeforeAndEndAfter(List.of(1, 2),
+                BookingStatus.APPROVED, past.plusDays(1), past))
+                .thenReturn(List.of(old));
+
+        Map<Integer, List<BookingPeriodDto>> busy = storage.findBusy(List.of(1, 2), past, past.plusDays(1));
+        assertEquals(Map.of(1, List.of(new BookingPeriodDto(5, old.getStart(), old.getEnd()))), busy);
+    }
+}
@@ -0,0 +1,109 @@
+package ru.practicum.shareit.booking;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.shareit.booking.dto.BookingInputDto;
+import ru.practicum.shareit.booking.exceptions.BookingOverlapException;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// без @Transactional: одобрения идут из разных потоков в своих транзакциях,
+// созданные данные удаляются после теста
+@SpringBootTest(
+        properties = "db.name=test",
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class BookingConcurrencyTest {
+    private static final int THREADS = 8;
+
+    private final UserRepository userRepository;
+    private final ItemRepository itemRepository;
+    private final BookingRepository bookingRepository;
+    private final BookingService bookingService;
+
+    private final List<Integer> bookingIds = new ArrayList<>();
+    private Item item;
+    private User owner;
+    private User booker;
+
+    @AfterEach
+    void cleanUp() {
+        bookingRepository.deleteAllById(bookingIds);
+        if (item != null)
+            itemRepository.deleteById(item.getId());
+        if (owner != null)
+            userRepository.deleteById(owner.getId());
+        if (booker != null)
+            userRepository.deleteById(booker.getId());
+    }
+
+    @Test
+    void concurrentApproveTest() throws Exception {
+        owner = userRepository.save(User.builder()
+                .name("concurrent owner")
+                .email("concurrent.owner@ya.ru")
+                .build());
+        booker = userRepository.save(User.builder()
+                .name("concurrent booker")
+                .email("concurrent.booker@ya.ru")
+                .build());
+        item = itemRepository.save(Item.builder()
+                .name("concurrent item")
+                .description("concurrent item description")
+                .available(true)
+                .owner(owner.getId())
+                .build());
+
+        // пересекающиеся заявки на одну вещь одобряются одновременно
+        LocalDateTime start = LocalDateTime.of(2100, 6, 29, 10, 0);
+        List<Callable<BookingStatus>> approvals = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            int id = bookingService.addBooking(new BookingInputDto(item.getId(),
+                    start.plusMinutes(i), start.plusMinutes(i + 30)), booker.getId()).getId();
+            bookingIds.add(id);
+            approvals.add(() -> bookingService.approveBooking(id, owner.getId(), true).getStatus());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        int approved = 0;
+        int overlapped = 0;
+        try {
+            for (Future<BookingStatus> future : executor.invokeAll(approvals)) {
+                try {
+                    assertEquals(BookingStatus.APPROVED, future.get());
+                    ++approved;
+                } catch (ExecutionException e) {
+                    assertEquals(BookingOverlapException.class, e.getCause().getClass());
+                    ++overlapped;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, approved);
+        assertEquals(THREADS - 1, overlapped);
+        assertEquals(1, bookingRepository.findAllById(bookingIds).stream()
+                .filter(booking -> booking.getStatus() == BookingStatus.APPROVED)
+                .count());
+    }
+}
@@ -7,11 +7,16 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.practicum.shareit.booking.dto.BookerDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingInputDto;
 import ru.practicum.shareit.booking.exceptions.BookingBadPageParamsException;
+import ru.practicum.shareit.booking.exceptions.BookingConcurrentUpdateException;
 import ru.practicum.shareit.booking.exceptions.BookingIncompleteDataException;
+import ru.practicum.shareit.booking.exceptions.BookingOverlapException;
 import ru.practicum.shareit.booking.exceptions.BookingNotFoundException;
 import ru.practicum.shareit.booking.exceptions.BookingUnsupportedStatusException;
 import ru.practicum.shareit.booking.model.BookingStatus;
@@ -29,12 +34,19 @@ import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = BookingController.class)
@@ -93,6 +105,18 @@ public class BookingControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void postBookingTestOverlap() throws Exception {
+        when(service.addBooking(any(), anyInt())).thenThrow(new BookingOverlapException(""));
+
+        mvc.perform(post("/bookings").header("X-Sharer-User-Id", 1)
+                        .content(mapper.writeValueAsString(input))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     void postBookingTestUserNotFound() throws Exception {
         when(service.addBooking(any(), anyInt())).thenThrow(new UserNotFoundException(""));
@@ -146,6 +170,55 @@ public class BookingControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void approveBookingsTest() throws Exception {
+        List<BookingDecisionDto> decisions = List.of(new BookingDecisionDto(1, true),
+                new BookingDecisionDto(2, false));
+        when(service.approveBookings(decisions, 1)).thenReturn(List.of(
+                new BookingDecisionResultDto(1, BookingStatus.APPROVED, null),
+                new BookingDecisionResultDto(2, null, "Бронирование уже одобрено")));
+
+        mvc.perform(patch("/bookings/batch")
+                        .header("X-Sharer-User-Id", 1)
+                        .content(mapper.writeValueAsString(decisions))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].bookingId", is(1)))
+                .andExpect(jsonPath("$[0].status", is("APPROVED")))
+                .andExpect(jsonPath("$[1].bookingId", is(2)))
+                .andExpect(jsonPath("$[1].error", is("Бронирование уже одобрено")));
+
+        when(service.approveBookings(anyList(), anyInt()))
+                .thenThrow(new BookingConcurrentUpdateException(""));
+
+        mvc.perform(patch("/bookings/batch")
+                        .header("X-Sharer-User-Id", 1)
+                        .content(mapper.writeValueAsString(decisions))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void approveBookingsTestFail() throws Exception {
+        // пустой элемент списка и решение без approved
+        for (String content : List.of("[{\"bookingId\": 1, \"approved\": true}, null]",
+                "[{\"bookingId\": 1}]", "[{\"approved\": false}]")) {
+            mvc.perform(patch("/bookings/batch")
+                            .header("X-Sharer-User-Id", 1)
+                            .content(content)
+                            .characterEncoding(StandardCharsets.UTF_8)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.error").exists());
+        }
+        verify(service, never()).approveBookings(anyList(), anyInt());
+    }
+
     @Test
     void getBookingTest() throws Exception {
         when(service.getBooking(anyInt(), anyInt())).thenReturn(output);
@@ -178,7 +251,7 @@ public class BookingControllerTest {
 
     @Test
     void getUserBookingsTest() throws Exception {
-        when(service.getUserBookings(anyInt(), anyString(), anyInt(), anyInt())).thenReturn(List.of(output));
+        when(service.getUserBookings(anyInt(), anyString(), anyInt(), anyInt(), any())).thenReturn(List.of(output));
 
         mvc.perform(get("/bookings")
                         .header("X-Sharer-User-Id", 1)
@@ -190,7 +263,7 @@ public class BookingControllerTest {
 
     @Test
     void getUserBookingsTestFail() throws Exception {
-        when(service.getUserBookings(anyInt(), anyString(), anyInt(), anyInt()))
+        when(service.getUserBookings(anyInt(), anyString(), anyInt(), anyInt(), any()))
                 .thenThrow(new BookingBadPageParamsException(""));
 
         mvc.perform(get("/bookings")
@@ -203,7 +276,8 @@ public class BookingControllerTest {
 
     @Test
     void getUserItemsBookingsTest() throws Exception {
-        when(service.getUserItemsBookings(anyInt(), anyString(), anyInt(), anyInt())).thenReturn(List.of(output));
+        when(service.getUserItemsBookings(anyInt(), anyString(), anyInt(), anyInt(), any()))
+                .thenReturn(List.of(output));
 
         mvc.perform(get("/bookings/owner")
                         .header("X-Sharer-User-Id", 1)
@@ -215,7 +289,7 @@ public class BookingControllerTest {
 
     @Test
     void getUserItemsBookingsTestFail() throws Exception {
-        when(service.getUserItemsBookings(anyInt(), anyString(), anyInt(), anyInt()))
+        when(service.getUserItemsBookings(anyInt(), anyString(), anyInt(), anyInt(), any()))
                 .thenThrow(new BookingUnsupportedStatusException(""));
 
         mvc.perform(get("/bookings/owner")
@@ -226,4 +300,33 @@ public class BookingControllerTest {
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void streamUserBookingsTest() throws Exception {
+        when(service.streamUserBookings(anyInt(), eq("ALL"))).thenReturn(action -> List.of(output).forEach(action));
+
+        MvcResult result = mvc.perform(get("/bookings")
+                        .header("X-Sharer-User-Id", 1)
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(mapper.writeValueAsString(output) + "\n"));
+    }
+
+    @Test
+    void streamUserItemsBookingsTestFail() throws Exception {
+        when(service.streamUserItemsBookings(anyInt(), anyString()))
+                .thenThrow(new BookingUnsupportedStatusException(""));
+
+        // ошибка в параметрах возвращается до начала потоковой выдачи
+        mvc.perform(get("/bookings/owner")
+                        .header("X-Sharer-User-Id", 1)
+                        .param("state", "NOT ALL")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("")));
+    }
 }
@@ -1,22 +1,46 @@
 package ru.practicum.shareit.booking;
 
 import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionResultDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingInputDto;
+import ru.practicum.shareit.booking.exceptions.BookingIncompleteDataException;
+import ru.practicum.shareit.booking.exceptions.BookingOverlapException;
+import ru.practicum.shareit.booking.exceptions.BookingUnsupportedStatusException;
+import ru.practicum.shareit.booking.model.BookingStatus;
 import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.booking.storage.BookingRepository;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityInputDto;
+import ru.practicum.shareit.item.exceptions.ItemIncompleteDataException;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.service.ItemService;
 import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.user.exceptions.UserNotFoundException;
 import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserIdIndex;
 import ru.practicum.shareit.user.storage.UserRepository;
+import ru.practicum.shareit.util.PageCursor;
 
+import javax.persistence.EntityManagerFactory;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Transactional
 @SpringBootTest(
@@ -26,7 +50,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 public class BookingServiceIntegralTest {
     private final UserRepository userRepository;
     private final ItemRepository itemRepository;
+    private final BookingRepository bookingRepository;
     private final BookingService bookingService;
+    private final ItemService itemService;
+    private final EntityManagerFactory entityManagerFactory;
+    private final CacheManager cacheManager;
+    private final UserIdIndex userIdIndex;
 
     User owner = User.builder()
             .id(1)
@@ -50,8 +79,8 @@ public class BookingServiceIntegralTest {
 
     BookingInputDto booking
             = new BookingInputDto(item.getId(),
-            LocalDateTime.of(2023, 6, 29, 10, 0),
-            LocalDateTime.of(2023, 6, 29, 10, 15));
+            LocalDateTime.of(2100, 6, 29, 10, 0),
+            LocalDateTime.of(2100, 6, 29, 10, 15));
 
     int bookingId = 0;
 
@@ -66,7 +95,7 @@ public class BookingServiceIntegralTest {
         booking.setItemId(item.getId());
         bookingId = bookingService.addBooking(booking, booker.getId()).getId();
 
-        List<BookingDto> result = bookingService.getUserBookings(booker.getId(), "ALL", 0, 5);
+        List<BookingDto> result = bookingService.getUserBookings(booker.getId(), "ALL", 0, 5, null);
 
         assertEquals(1, result.size());
         assertEquals(bookingId, result.get(0).getId());
@@ -85,11 +114,353 @@ public class BookingServiceIntegralTest {
         booking.setItemId(item.getId());
         bookingId = bookingService.addBooking(booking, booker.getId()).getId();
 
-        List<BookingDto> result = bookingService.getUserItemsBookings(owner.getId(), "ALL", 0, 5);
+        List<BookingDto> result = bookingService.getUserItemsBookings(owner.getId(), "ALL", 0, 5, null);
 
         assertEquals(1, result.size());
         assertEquals(bookingId, result.get(0).getId());
         assertEquals(item.getName(), result.get(0).getItem().getName());
-        assertEquals(owner.getName(), result.get(0).getBooker().getName());
+        assertEquals(booker.getName(), result.get(0).getBooker().getName());
+
+        // владелец видит имя автора бронирования, а не свое
+        BookingDto single = bookingService.getBooking(bookingId, owner.getId());
+        assertEquals(booker.getName(), single.getBooker().getName());
+
+        single = bookingService.approveBooking(bookingId, owner.getId(), true);
+        assertEquals(booker.getName(), single.getBooker().getName());
+        assertEquals(BookingStatus.APPROVED, single.getStatus());
+    }
+
+    @Test
+    void overlappingBookingsTest() {
+        owner.setId(userRepository.save(owner).getId());
+        booker.setId(userRepository.save(booker).getId());
+
+        item.setOwner(owner.getId());
+        item.setId(itemRepository.save(item).getId());
+
+        booking.setItemId(item.getId());
+        bookingId = bookingService.addBooking(booking, booker.getId()).getId();
+        // пока бронирование не одобрено, пересекающиеся заявки принимаются
+        int otherId = bookingService.addBooking(new BookingInputDto(item.getId(),
+                booking.getStart().plusMinutes(5),
+                booking.getEnd().plusMinutes(5)), booker.getId()).getId();
+
+        bookingService.approveBooking(bookingId, owner.getId(), true);
+
+        assertThrows(BookingOverlapException.class,
+                () -> bookingService.approveBooking(otherId, owner.getId(), true));
+        assertThrows(BookingOverlapException.class,
+                () -> bookingService.addBooking(new BookingInputDto(item.getId(),
+                        booking.getStart().minusMinutes(5),
+                        booking.getStart().plusMinutes(1)), booker.getId()));
+
+        // смежный интервал не пересекается: конец не входит в бронирование
+        int nextId = bookingService.addBooking(new BookingInputDto(item.getId(),
+                booking.getEnd(),
+                booking.getEnd().plusMinutes(15)), booker.getId()).getId();
+        assertEquals(BookingStatus.APPROVED,
+                bookingService.approveBooking(nextId, owner.getId(), true).getStatus());
+        assertEquals(BookingStatus.REJECTED,
+                bookingService.approveBooking(otherId, owner.getId(), false).getStatus());
+    }
+
+    @Test
+    void approveBookingOnceTest() {
+        owner.setId(userRepository.save(owner).getId());
+        booker.setId(userRepository.save(booker).getId());
+
+        item.setOwner(owner.getId());
+        item.setId(itemRepository.save(item).getId());
+
+        booking.setItemId(item.getId());
+        bookingId = bookingService.addBooking(booking, booker.getId()).getId();
+        int rejectedId = bookingService.addBooking(new BookingInputDto(item.getId(),
+                booking.getEnd(), booking.getEnd().plusMinutes(15)), booker.getId()).getId();
+
+        assertEquals(BookingStatus.APPROVED,
+                bookingService.approveBooking(bookingId, owner.getId(), true).getStatus());
+        assertEquals(BookingStatus.REJECTED,
+                bookingService.approveBooking(rejectedId, owner.getId(), false).getStatus());
+
+        // повтор и смена решения ничего не меняют
+        assertThrows(BookingIncompleteDataException.class,
+                () -> bookingService.approveBooking(bookingId, owner.getId(), true));
+        assertThrows(BookingIncompleteDataException.class,
+                () -> bookingService.approveBooking(bookingId, owner.getId(), false));
+        assertThrows(BookingIncompleteDataException.class,
+                () -> bookingService.approveBooking(rejectedId, owner.getId(), true));
+
+        assertEquals(BookingStatus.APPROVED, bookingService.getBooking(bookingId, owner.getId()).getStatus());
+        assertEquals(BookingStatus.REJECTED, bookingService.getBooking(rejectedId, owner.getId()).getStatus());
+        assertEquals(1, bookingRepository.findById(bookingId).get().getVersion());
+    }
+
+    @Test
+    void approveBookingsTest() {
+        User otherOwner = User.builder()
+                .name("other owner")
+                .email("other.owner@ya.ru")
+                .build();
+
+        owner.setId(userRepository.save(owner).getId());
+        booker.setId(userRepository.save(booker).getId());
+        otherOwner.setId(userRepository.save(otherOwner).getId());
+
+        item.setOwner(owner.getId());
+        item.setId(itemRepository.save(item).getId());
+        int otherItemId = itemRepository.save(Item.builder()
+                .name("other item")
+                .description("other item description")
+                .available(true)
+                .owner(otherOwner.getId())
+                .build()).getId();
+
+        LocalDateTime start = booking.getStart();
+        int approvedId = bookingService.addBooking(new BookingInputDto(item.getId(),
+                start, start.plusHours(1)), booker.getId()).getId();
+        int overlappingId = bookingService.addBooking(new BookingInputDto(item.getId(),
+                start.plusMinutes(30), start.plusHours(2)), booker.getId()).getId();
+        int rejectedId = bookingService.addBooking(new BookingInputDto(item.getId(),
+                start.plusDays(1), start.plusDays(2)), booker.getId()).getId();
+        int alreadyApprovedId = bookingService.addBooking(new BookingInputDto(item.getId(),
+                start.plusDays(3), start.plusDays(4)), booker.getId()).getId();
+        int foreignId = bookingService.addBooking(new BookingInputDto(otherItemId,
+                start, start.plusHours(1)), booker.getId()).getId();
+        bookingService.approveBooking(alreadyApprovedId, owner.getId(), true);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        List<BookingDecisionResultDto> result = bookingService.approveBookings(List.of(
+                new BookingDecisionDto(approvedId, true),
+                new BookingDecisionDto(overlappingId, true),
+                new BookingDecisionDto(rejectedId, false),
+                new BookingDecisionDto(alreadyApprovedId, true),
+                new BookingDecisionDto(foreignId, true),
+                new BookingDecisionDto(approvedId, false),
+                new BookingDecisionDto(foreignId + 1000, true)), owner.getId());
+
+        long queries = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+
+        List<BookingStatus> statuses = result.stream()
+                .map(BookingDecisionResultDto::getStatus)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(BookingStatus.APPROVED, null, BookingStatus.REJECTED, null, null, null, null),
+                statuses);
+        assertEquals("Бронирование уже одобрено", result.get(3).getError());
+        assertEquals("Только владелец вещи может одобрить бронирование", result.get(4).getError());
+
+        // соединение, блокировка вещей, одобренные бронирования и два update
+        assertTrue(queries <= 5, "queries: " + queries);
+
+        assertEquals(BookingStatus.APPROVED, bookingService.getBooking(approvedId, owner.getId()).getStatus());
+        assertEquals(BookingStatus.WAITING, bookingService.getBooking(overlappingId, owner.getId()).getStatus());
+        assertEquals(BookingStatus.REJECTED, bookingService.getBooking(rejectedId, owner.getId()).getStatus());
+        assertEquals(BookingStatus.WAITING, bookingService.getBooking(foreignId, otherOwner.getId()).getStatus());
+        assertFalse(itemService.getAvailability(item.getId(), owner.getId(), start, start.plusMinutes(1)).isAvailable());
+    }
+
+    @Test
+    void availabilityTest() {
+        owner.setId(userRepository.save(owner).getId());
+        booker.setId(userRepository.save(booker).getId());
+
+        item.setOwner(owner.getId());
+        item.setId(itemRepository.save(item).getId());
+
+        booking.setItemId(item.getId());
+        bookingId = bookingService.addBooking(booking, booker.getId()).getId();
+
+        // ожидающее бронирование вещь не занимает
+        ItemAvailabilityDto result = itemService.getAvailability(item.getId(), booker.getId(),
+                booking.getStart(), booking.getEnd());
+        assertTrue(result.isAvailable());
+
+        bookingService.approveBooking(bookingId, owner.getId(), true);
+        result = itemService.getAvailability(item.getId(), booker.getId(), booking.getStart().minusHours(1),
+                booking.getStart().plusMinutes(1));
+        assertFalse(result.isAvailable());
+        assertEquals(bookingId, result.getBusy().get(0).getBookingId());
+
+        List<ItemAvailabilityDto> bulk = itemService.getAvailability(new ItemAvailabilityInputDto(
+                List.of(item.getId(), item.getId() + 1000), booking.getEnd(), booking.getEnd().plusHours(1)),
+                booker.getId());
+        assertEquals(1, bulk.size());
+        assertTrue(bulk.get(0).isAvailable());
+
+        assertThrows(ItemIncompleteDataException.class, () -> itemService.getAvailability(item.getId(),
+                booker.getId(), booking.getEnd(), booking.getStart()));
+        assertThrows(UserNotFoundException.class, () -> itemService.getAvailability(item.getId(),
+                booker.getId() + 1000, booking.getStart(), booking.getEnd()));
+        assertThrows(UserNotFoundException.class, () -> itemService.getAvailability(new ItemAvailabilityInputDto(
+                List.of(item.getId()), booking.getStart(), booking.getEnd()), booker.getId() + 1000));
+    }
+
+    @Test
+    void getUserBookingsPageOnlyContainsBookerRowsTest() {
+        User otherBooker = User.builder()
+                .id(3)
+                .name("other booker")
+                .email("other@ya.ru")
+                .build();
+
+        owner.setId(userRepository.save(owner).getId());
+        booker.setId(userRepository.save(booker).getId());
+        otherBooker.setId(userRepository.save(otherBooker).getId());
+
+        item.setOwner(owner.getId());
+        item.setId(itemRepository.save(item).getId());
+
+        booking.setItemId(item.getId());
+        bookingId = bookingService.addBooking(booking, booker.getId()).getId();
+
+        // более поздние бронирования другого пользователя не должны вытеснять
+        // бронирование booker со страницы
+        for (int i = 1; i <= 3; i++) {
+            bookingService.addBooking(new BookingInputDto(item.getId(),
+                    booking.getStart().plusDays(i),
+                    booking.getEnd().plusDays(i)), otherBooker.getId());
+        }
+
+        List<BookingDto> result = bookingService.getUserBookings(booker.getId(), "ALL", 0, 2, null);
+        assertEquals(1, result.size());
+        assertEquals(bookingId, result.get(0).getId());
+
+        result = bookingService.getUserItemsBookings(owner.getId(), "FUTURE", 1, 2, null);
+        assertEquals(2, result.size());
+        assertEquals(bookingId, result.get(1).getId());
+    }
+
+    @Test
+    void getUserBookingsCursorTest() {
+        owner.setId(userRepository.save(owner).getId());
+        booker.setId(userRepository.save(booker).getId());
+
+        item.setOwner(owner.getId());
+        item.setId(itemRepository.save(item).getId());
+
+        // у пар бронирований одинаковое время начала: порядок внутри пары задает id
+        for (int i = 0; i < 5; i++) {
+            bookingService.addBooking(new BookingInputDto(item.getId(),
+                    booking.getStart().plusDays(i / 2),
+                    booking.getEnd().plusDays(i / 2)), booker.getId());
+        }
+
+        List<Integer> expected = bookingService.getUserBookings(booker.getId(), "ALL", null, null, null).stream()
+                .map(BookingDto::getId)
+                .collect(Collectors.toList());
+        assertEquals(5, expected.size());
+
+        List<Integer> bookerIds = new ArrayList<>();
+        List<Integer> ownerIds = new ArrayList<>();
+        String bookerCursor = "";
+        String ownerCursor = "";
+        for (int i = 0; i < 3; i++) {
+            List<BookingDto> page = bookingService.getUserBookings(booker.getId(), "ALL", null, 2, bookerCursor);
+            page.forEach(dto -> bookerIds.add(dto.getId()));
+            BookingDto last = page.get(page.size() - 1);
+            bookerCursor = new PageCursor(last.getStart(), last.getId()).encode();
+
+            page = bookingService.getUserItemsBookings(owner.getId(), "FUTURE", null, 2, ownerCursor);
+            page.forEach(dto -> ownerIds.add(dto.getId()));
+            last = page.get(page.size() - 1);
+            ownerCursor = new PageCursor(last.getStart(), last.getId()).encode();
+        }
+
+        assertEquals(expected, bookerIds);
+        assertEquals(expected, ownerIds);
+        assertTrue(bookingService.getUserBookings(booker.getId(), "ALL", null, 2, bookerCursor).isEmpty());
+    }
+
+    @Test
+    void streamUserBookingsTest() {
+        owner.setId(userRepository.save(owner).getId());
+        booker.setId(userRepository.save(booker).getId());
+
+        item.setOwner(owner.getId());
+        item.setId(itemRepository.save(item).getId());
+
+        for (int i = 0; i < 3; i++) {
+            bookingService.addBooking(new BookingInputDto(item.getId(),
+                    booking.getStart().plusDays(i),
+                    booking.getEnd().plusDays(i)), booker.getId());
+        }
+        int rejectedId = bookingService.getUserBookings(booker.getId(), "ALL", null, null, null).get(0).getId();
+        bookingService.approveBooking(rejectedId, owner.getId(), false);
+
+        // поток отдает те же бронирования и в том же порядке, что и список
+        for (String state : List.of("ALL", "CURRENT", "PAST", "FUTURE", "WAITING", "REJECTED")) {
+            List<BookingDto> streamed = new ArrayList<>();
+            bookingService.streamUserBookings(booker.getId(), state).forEach(streamed::add);
+            assertEquals(bookingService.getUserBookings(booker.getId(), state, null, null, null), streamed);
+
+            streamed.clear();
+            bookingService.streamUserItemsBookings(owner.getId(), state).forEach(streamed::add);
+            assertEquals(bookingService.getUserItemsBookings(owner.getId(), state, null, null, null), streamed);
+        }
+
+        List<BookingDto> rejected = new ArrayList<>();
+        bookingService.streamUserBookings(booker.getId(), "REJECTED").forEach(rejected::add);
+        assertEquals(1, rejected.size());
+        assertEquals(rejectedId, rejected.get(0).getId());
+
+        assertThrows(BookingUnsupportedStatusException.class,
+                () -> bookingService.streamUserBookings(booker.getId(), "UNKNOWN"));
+        assertThrows(UserNotFoundException.class,
+                () -> bookingService.streamUserBookings(booker.getId() + 100, "ALL"));
+    }
+
+    @Test
+    void getUserBookingsQueryCountTest() {
+        owner.setId(userRepository.save(owner).getId());
+        booker.setId(userRepository.save(booker).getId());
+
+        // несколько вещей, чтобы каждое бронирование ссылалось на свою вещь
+        for (int i = 0; i < 5; i++) {
+            Item localItem = Item.builder()
+                    .name("item " + i)
+                    .description("item description")
+                    .available(true)
+                    .owner(owner.getId())
+                    .build();
+            localItem.setId(itemRepository.save(localItem).getId());
+
+            bookingService.addBooking(new BookingInputDto(localItem.getId(),
+                    booking.getStart().plusDays(i),
+                    booking.getEnd().plusDays(i)), booker.getId());
+        }
+
+        // отложенные изменения не должны попасть в подсчет запросов,
+        // кэш пользователей и вещей очищается, чтобы считать запросы без него.
+        // Пользователи сохранены в обход UserService, поэтому их id
+        // добавляются в UserIdIndex вручную: существование проверяется без запроса
+        userRepository.flush();
+        userIdIndex.add(owner.getId());
+        userIdIndex.add(booker.getId());
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        List<BookingDto> result = bookingService.getUserBookings(booker.getId(), "ALL", null, null, null);
+        assertEquals(5, result.size());
+        assertEquals("item 4", result.get(0).getItem().getName());
+        assertEquals(booker.getName(), result.get(0).getBooker().getName());
+        long bookerQueries = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        result = bookingService.getUserItemsBookings(owner.getId(), "ALL", null, null, null);
+        assertEquals(5, result.size());
+        long ownerQueries = statistics.getPrepareStatementCount();
+
+        statistics.setStatisticsEnabled(false);
+
+        // число запросов не зависит от количества бронирований
+        assertEquals(1, bookerQueries);
+        assertEquals(2, ownerQueries);
     }
 }
@@ -1,21 +1,27 @@
 package ru.practicum.shareit.booking;
 
 import org.junit.jupiter.api.Test;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.shareit.booking.dto.BookerDto;
+import ru.practicum.shareit.booking.dto.BookingDecisionDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
 import ru.practicum.shareit.booking.dto.BookingInputDto;
+import ru.practicum.shareit.booking.dto.BookingWOwnerDto;
 import ru.practicum.shareit.booking.exceptions.BookingAccessRestrictException;
 import ru.practicum.shareit.booking.exceptions.BookingBadPageParamsException;
+import ru.practicum.shareit.booking.exceptions.BookingConcurrentUpdateException;
 import ru.practicum.shareit.booking.exceptions.BookingIncompleteDataException;
 import ru.practicum.shareit.booking.exceptions.BookingNotFoundException;
+import ru.practicum.shareit.booking.exceptions.BookingOverlapException;
 import ru.practicum.shareit.booking.exceptions.BookingUnsupportedStatusException;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.BookingStatus;
 import ru.practicum.shareit.booking.service.BookingService;
 import ru.practicum.shareit.booking.service.BookingServiceImpl;
+import ru.practicum.shareit.booking.storage.BookingAvailabilityStorage;
 import ru.practicum.shareit.booking.storage.BookingRepository;
 import ru.practicum.shareit.item.dto.MinItemDto;
 import ru.practicum.shareit.item.exceptions.ItemNotFoundException;
@@ -23,6 +29,7 @@ import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.storage.ItemRepository;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
 import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserIdIndex;
 import ru.practicum.shareit.user.storage.UserRepository;
 
 import java.time.LocalDateTime;
@@ -30,9 +37,14 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class BookingServiceUnitTest {
@@ -40,16 +52,18 @@ public class BookingServiceUnitTest {
     UserRepository userRepository = mock(UserRepository.class);
     ItemRepository itemRepository = mock(ItemRepository.class);
     BookingService bookingService
-            = new BookingServiceImpl(bookingRepository, userRepository, itemRepository);
+            = new BookingServiceImpl(bookingRepository, userRepository, new UserIdIndex(userRepository), itemRepository,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)),
+            new BookingAvailabilityStorage(bookingRepository));
 
     BookingInputDto input = new BookingInputDto(1,
-            LocalDateTime.of(2023, 6, 29, 10, 0),
-            LocalDateTime.of(2023, 6, 29, 10, 15));
+            LocalDateTime.of(2100, 6, 29, 10, 0),
+            LocalDateTime.of(2100, 6, 29, 10, 15));
 
     BookingDto output = BookingDto.builder()
             .id(2)
-            .start(LocalDateTime.of(2023, 6, 29, 10, 0))
-            .end(LocalDateTime.of(2023, 6, 29, 10, 15))
+            .start(LocalDateTime.of(2100, 6, 29, 10, 0))
+            .end(LocalDateTime.of(2100, 6, 29, 10, 15))
             .item(new MinItemDto(1, "item name"))
             .booker(new BookerDto(3, "user name"))
             .status(BookingStatus.WAITING)
@@ -78,8 +92,8 @@ public class BookingServiceUnitTest {
 
     Booking semiResult = Booking.builder()
             .id(2)
-            .start(LocalDateTime.of(2023, 6, 29, 10, 0))
-            .end(LocalDateTime.of(2023, 6, 29, 10, 15))
+            .start(LocalDateTime.of(2100, 6, 29, 10, 0))
+            .end(LocalDateTime.of(2100, 6, 29, 10, 15))
             .item(1)
             .booker(3)
             .status(BookingStatus.WAITING)
@@ -104,11 +118,23 @@ public class BookingServiceUnitTest {
         assertEquals(output.getStatus(), result.getStatus());
     }
 
+    @Test
+    void addBookingOverlapTest() throws Exception {
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(itemRepository.findById(input.getItemId())).thenReturn(Optional.of(item));
+        when(bookingRepository.existsByItemAndStatusAndStartBeforeAndEndAfterAndIdNot(item.getId(),
+                BookingStatus.APPROVED, input.getEnd(), input.getStart(), 0)).thenReturn(true);
+
+        assertThrows(BookingOverlapException.class, () -> bookingService.addBooking(input, user.getId()));
+        verify(itemRepository).lockById(item.getId());
+        verify(bookingRepository, never()).save(any());
+    }
+
     @Test
     void addBookingIncompleteDataTest() throws Exception {
         BookingInputDto localInput = new BookingInputDto(1,
                 null,
-                LocalDateTime.of(2023, 6, 29, 10, 15));
+                LocalDateTime.of(2100, 6, 29, 10, 15));
 
         try {
             result = bookingService.addBooking(localInput, user.getId());
@@ -116,7 +142,7 @@ public class BookingServiceUnitTest {
             assertEquals(BookingIncompleteDataException.class, e.getClass());
         }
 
-        localInput.setStart(LocalDateTime.of(2023, 6, 29, 10, 0));
+        localInput.setStart(LocalDateTime.of(2100, 6, 29, 10, 0));
         localInput.setEnd(null);
 
         try {
@@ -125,7 +151,7 @@ public class BookingServiceUnitTest {
             assertEquals(BookingIncompleteDataException.class, e.getClass());
         }
 
-        localInput.setStart(LocalDateTime.of(2023, 6, 29, 10, 0));
+        localInput.setStart(LocalDateTime.of(2100, 6, 29, 10, 0));
         localInput.setEnd(LocalDateTime.of(2022, 6, 29, 10, 15));
 
         try {
@@ -135,7 +161,7 @@ public class BookingServiceUnitTest {
         }
 
         localInput.setStart(LocalDateTime.of(2022, 6, 29, 10, 0));
-        localInput.setEnd(LocalDateTime.of(2023, 6, 29, 10, 15));
+        localInput.setEnd(LocalDateTime.of(2100, 6, 29, 10, 15));
 
         try {
             result = bookingService.addBooking(localInput, user.getId());
@@ -205,8 +231,8 @@ public class BookingServiceUnitTest {
     void approveBookingTest() throws Exception {
         Booking localSemiResult = Booking.builder()
                 .id(2)
-                .start(LocalDateTime.of(2023, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 15))
+                .start(LocalDateTime.of(2100, 6, 29, 10, 0))
+                .end(LocalDateTime.of(2100, 6, 29, 10, 15))
                 .item(1)
                 .booker(3)
                 .status(BookingStatus.APPROVED)
@@ -214,17 +240,19 @@ public class BookingServiceUnitTest {
 
         BookingDto localOutput = BookingDto.builder()
                 .id(2)
-                .start(LocalDateTime.of(2023, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 15))
+                .start(LocalDateTime.of(2100, 6, 29, 10, 0))
+                .end(LocalDateTime.of(2100, 6, 29, 10, 15))
                 .item(new MinItemDto(1, "item name"))
-                .booker(new BookerDto(3, "owner name"))
+                .booker(new BookerDto(3, "user name"))
                 .status(BookingStatus.APPROVED)
                 .build();
 
         when(bookingRepository.findById(anyInt())).thenReturn(Optional.of(semiResult));
         when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
-        when(userRepository.findById(owner.getId())).thenReturn(Optional.of(owner));
-        when(bookingRepository.save(any())).thenReturn(localSemiResult);
+        when(bookingRepository.updateStatus(semiResult.getId(), BookingStatus.WAITING, BookingStatus.APPROVED))
+                .thenReturn(1);
+        when(bookingRepository.findBookingForUser(semiResult.getId(), owner.getId()))
+                .thenReturn(Optional.of(localOutput));
 
         result = bookingService.approveBooking(semiResult.getId(), item.getOwner(), true);
 
@@ -240,8 +268,8 @@ public class BookingServiceUnitTest {
     void approveBookingRejectTest() throws Exception {
         Booking localSemiResult = Booking.builder()
                 .id(2)
-                .start(LocalDateTime.of(2023, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 15))
+                .start(LocalDateTime.of(2100, 6, 29, 10, 0))
+                .end(LocalDateTime.of(2100, 6, 29, 10, 15))
                 .item(1)
                 .booker(3)
                 .status(BookingStatus.REJECTED)
@@ -249,17 +277,19 @@ public class BookingServiceUnitTest {
 
         BookingDto localOutput = BookingDto.builder()
                 .id(2)
-                .start(LocalDateTime.of(2023, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 15))
+                .start(LocalDateTime.of(2100, 6, 29, 10, 0))
+                .end(LocalDateTime.of(2100, 6, 29, 10, 15))
                 .item(new MinItemDto(1, "item name"))
-                .booker(new BookerDto(3, "owner name"))
+                .booker(new BookerDto(3, "user name"))
                 .status(BookingStatus.REJECTED)
                 .build();
 
         when(bookingRepository.findById(anyInt())).thenReturn(Optional.of(semiResult));
         when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
-        when(userRepository.findById(owner.getId())).thenReturn(Optional.of(owner));
-        when(bookingRepository.save(any())).thenReturn(localSemiResult);
+        when(bookingRepository.updateStatus(semiResult.getId(), BookingStatus.WAITING, BookingStatus.REJECTED))
+                .thenReturn(1);
+        when(bookingRepository.findBookingForUser(semiResult.getId(), owner.getId()))
+                .thenReturn(Optional.of(localOutput));
 
         result = bookingService.approveBooking(semiResult.getId(), item.getOwner(), false);
 
@@ -271,6 +301,35 @@ public class BookingServiceUnitTest {
         assertEquals(localOutput.getStatus(), result.getStatus());
     }
 
+    @Test
+    void approveBookingConcurrentlyChangedTest() throws Exception {
+        // бронирование прочитано в статусе WAITING, но до update его одобрил другой запрос
+        when(bookingRepository.findById(anyInt())).thenReturn(Optional.of(semiResult));
+        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
+        when(bookingRepository.updateStatus(semiResult.getId(), BookingStatus.WAITING, BookingStatus.APPROVED))
+                .thenReturn(0);
+        when(bookingRepository.findStatusById(semiResult.getId())).thenReturn(Optional.of(BookingStatus.APPROVED));
+
+        BookingIncompleteDataException e = assertThrows(BookingIncompleteDataException.class,
+                () -> bookingService.approveBooking(semiResult.getId(), item.getOwner(), true));
+        assertEquals("Бронирование уже одобрено", e.getMessage());
+        verify(bookingRepository, never()).findBookingForUser(anyInt(), anyInt());
+    }
+
+    @Test
+    void approveBookingsConcurrentlyChangedTest() throws Exception {
+        // статус прочитан как WAITING, но update каждый раз не находит строку:
+        // пакет разбирается заново несколько раз, затем возвращается ошибка
+        when(bookingRepository.findWithOwner(any())).thenReturn(List.of(new BookingWOwnerDto(semiResult.getId(),
+                semiResult.getStart(), semiResult.getEnd(), item.getId(), item.getOwner(), BookingStatus.WAITING)));
+        when(bookingRepository.updateStatuses(any(), eq(BookingStatus.WAITING), eq(BookingStatus.REJECTED)))
+                .thenReturn(0);
+
+        assertThrows(BookingConcurrentUpdateException.class, () -> bookingService.approveBookings(
+                List.of(new BookingDecisionDto(semiResult.getId(), false)), item.getOwner()));
+        verify(bookingRepository, times(3)).findWithOwner(any());
+    }
+
     @Test
     void approveBookingBookingNotFoundTest() throws Exception {
         when(bookingRepository.findById(anyInt())).thenReturn(Optional.empty());
@@ -284,9 +343,7 @@ public class BookingServiceUnitTest {
 
     @Test
     void getBookingTest() throws Exception {
-        when(bookingRepository.findById(anyInt())).thenReturn(Optional.of(semiResult));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
-        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(bookingRepository.findBookingForUser(semiResult.getId(), user.getId())).thenReturn(Optional.of(output));
 
         result = bookingService.getBooking(semiResult.getId(), user.getId());
 
@@ -300,8 +357,8 @@ public class BookingServiceUnitTest {
 
     @Test
     void getBookingTestFail() throws Exception {
-        when(bookingRepository.findById(anyInt())).thenReturn(Optional.of(semiResult));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.empty());
+        when(bookingRepository.findBookingForUser(anyInt(), anyInt())).thenReturn(Optional.empty());
+        when(bookingRepository.existsById(semiResult.getId())).thenReturn(true);
 
         try {
             result = bookingService.getBooking(semiResult.getId(), user.getId());
@@ -310,15 +367,25 @@ public class BookingServiceUnitTest {
         }
     }
 
+    @Test
+    void getBookingNotFoundTest() throws Exception {
+        when(bookingRepository.findBookingForUser(anyInt(), anyInt())).thenReturn(Optional.empty());
+        when(bookingRepository.existsById(anyInt())).thenReturn(false);
+
+        try {
+            result = bookingService.getBooking(semiResult.getId(), user.getId());
+        } catch (Exception e) {
+            assertEquals(BookingNotFoundException.class, e.getClass());
+        }
+    }
+
     @Test
     void getUserBookingsAllTest() throws Exception {
-        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-        when(bookingRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "start"))))
-                .thenReturn(new PageImpl<>(List.of(semiResult)));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
+        when(userRepository.existsById(user.getId())).thenReturn(true);
+        when(bookingRepository.findBookerBookings(user.getId(), PageRequest.of(0, 5)))
+                .thenReturn(List.of(output));
 
-        listResult = bookingService.getUserBookings(user.getId(), "ALL", 0, 5);
+        listResult = bookingService.getUserBookings(user.getId(), "ALL", 0, 5, null);
 
         assertEquals(1, listResult.size());
         assertEquals(output.getId(), listResult.get(0).getId());
@@ -328,11 +395,11 @@ public class BookingServiceUnitTest {
 
     @Test
     void getUserBookingsAllNullParamsTest() throws Exception {
-        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-        when(bookingRepository.findByBookerOrderByStartDesc(user.getId())).thenReturn(List.of(semiResult));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
+        when(userRepository.existsById(user.getId())).thenReturn(true);
+        when(bookingRepository.findBookerBookings(user.getId(), Pageable.unpaged()))
+                .thenReturn(List.of(output));
 
-        listResult = bookingService.getUserBookings(user.getId(), "ALL", null, null);
+        listResult = bookingService.getUserBookings(user.getId(), "ALL", null, null, null);
 
         assertEquals(1, listResult.size());
         assertEquals(output.getId(), listResult.get(0).getId());
@@ -345,28 +412,17 @@ public class BookingServiceUnitTest {
         BookingDto localOutput = BookingDto.builder()
                 .id(2)
                 .start(LocalDateTime.of(2022, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 15))
+                .end(LocalDateTime.of(2100, 6, 29, 10, 15))
                 .item(new MinItemDto(1, "item name"))
                 .booker(new BookerDto(3, "user name"))
                 .status(BookingStatus.WAITING)
                 .build();
 
-        Booking localSemiResult = Booking.builder()
-                .id(2)
-                .start(LocalDateTime.of(2022, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 15))
-                .item(1)
-                .booker(3)
-                .status(BookingStatus.WAITING)
-                .build();
-
-        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-        when(bookingRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "start"))))
-                .thenReturn(new PageImpl<>(List.of(localSemiResult)));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
+        when(userRepository.existsById(user.getId())).thenReturn(true);
+        when(bookingRepository.findBookerCurrentBookings(anyInt(), any(), any()))
+                .thenReturn(List.of(localOutput));
 
-        listResult = bookingService.getUserBookings(user.getId(), "CURRENT", 0, 5);
+        listResult = bookingService.getUserBookings(user.getId(), "CURRENT", 0, 5, null);
 
         assertEquals(1, listResult.size());
         assertEquals(localOutput.getId(), listResult.get(0).getId());
@@ -385,22 +441,11 @@ public class BookingServiceUnitTest {
                 .status(BookingStatus.WAITING)
                 .build();
 
-        Booking localSemiResult = Booking.builder()
-                .id(2)
-                .start(LocalDateTime.of(2022, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2022, 6, 29, 10, 15))
-                .item(1)
-                .booker(3)
-                .status(BookingStatus.WAITING)
-                .build();
+        when(userRepository.existsById(user.getId())).thenReturn(true);
+        when(bookingRepository.findBookerPastBookings(anyInt(), any(), any()))
+                .thenReturn(List.of(localOutput));
 
-        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-        when(bookingRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "start"))))
-                .thenReturn(new PageImpl<>(List.of(localSemiResult)));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
-
-        listResult = bookingService.getUserBookings(user.getId(), "PAST", 0, 5);
+        listResult = bookingService.getUserBookings(user.getId(), "PAST", 0, 5, null);
 
         assertEquals(1, listResult.size());
         assertEquals(localOutput.getId(), listResult.get(0).getId());
@@ -410,13 +455,11 @@ public class BookingServiceUnitTest {
 
     @Test
     void getUserBookingsFutureTest() throws Exception {
-        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-        when(bookingRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "start"))))
-                .thenReturn(new PageImpl<>(List.of(semiResult)));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
+        when(userRepository.existsById(user.getId())).thenReturn(true);
+        when(bookingRepository.findBookerFutureBookings(anyInt(), any(), any()))
+                .thenReturn(List.of(output));
 
-        listResult = bookingService.getUserBookings(user.getId(), "FUTURE", 0, 5);
+        listResult = bookingService.getUserBookings(user.getId(), "FUTURE", 0, 5, null);
 
         assertEquals(1, listResult.size());
         assertEquals(output.getId(), listResult.get(0).getId());
@@ -426,13 +469,12 @@ public class BookingServiceUnitTest {
 
     @Test
     void getUserBookingsWaitingTest() throws Exception {
-        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(userRepository.existsById(user.getId())).thenReturn(true);
         when(bookingRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "start"))))
-                .thenReturn(new PageImpl<>(List.of(semiResult)));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
+                .findBookerBookingsByStatus(user.getId(), BookingStatus.WAITING, PageRequest.of(0, 5)))
+                .thenReturn(List.of(output));
 
-        listResult = bookingService.getUserBookings(user.getId(), "WAITING", 0, 5);
+        listResult = bookingService.getUserBookings(user.getId(), "WAITING", 0, 5, null);
 
         assertEquals(1, listResult.size());
         assertEquals(output.getId(), listResult.get(0).getId());
@@ -444,29 +486,19 @@ public class BookingServiceUnitTest {
     void getUserBookingsRejectedTest() throws Exception {
         BookingDto localOutput = BookingDto.builder()
                 .id(2)
-                .start(LocalDateTime.of(2023, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 15))
+                .start(LocalDateTime.of(2100, 6, 29, 10, 0))
+                .end(LocalDateTime.of(2100, 6, 29, 10, 15))
                 .item(new MinItemDto(1, "item name"))
                 .booker(new BookerDto(3, "user name"))
                 .status(BookingStatus.REJECTED)
                 .build();
 
-        Booking localSemiResult = Booking.builder()
-                .id(2)
-                .start(LocalDateTime.of(2023, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 15))
-                .item(1)
-                .booker(3)
-                .status(BookingStatus.REJECTED)
-                .build();
-
-        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(userRepository.existsById(user.getId())).thenReturn(true);
         when(bookingRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "start"))))
-                .thenReturn(new PageImpl<>(List.of(localSemiResult)));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
+                .findBookerBookingsByStatus(user.getId(), BookingStatus.REJECTED, PageRequest.of(0, 5)))
+                .thenReturn(List.of(localOutput));
 
-        listResult = bookingService.getUserBookings(user.getId(), "REJECTED", 0, 5);
+        listResult = bookingService.getUserBookings(user.getId(), "REJECTED", 0, 5, null);
 
         assertEquals(1, listResult.size());
         assertEquals(localOutput.getId(), listResult.get(0).getId());
@@ -477,10 +509,10 @@ public class BookingServiceUnitTest {
 
     @Test
     void getUserBookingsBadPageParamsTest() throws Exception {
-        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(userRepository.existsById(user.getId())).thenReturn(true);
 
         try {
-            listResult = bookingService.getUserBookings(user.getId(), "REJECTED", 0, null);
+            listResult = bookingService.getUserBookings(user.getId(), "REJECTED", 0, null, null);
         } catch (Exception e) {
             assertEquals(BookingBadPageParamsException.class, e.getClass());
         }
@@ -488,14 +520,10 @@ public class BookingServiceUnitTest {
 
     @Test
     void getUserBookingsBadStateTest() throws Exception {
-        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
-        when(bookingRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "start"))))
-                .thenReturn(new PageImpl<>(List.of(semiResult)));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
+        when(userRepository.existsById(user.getId())).thenReturn(true);
 
         try {
-            listResult = bookingService.getUserBookings(user.getId(), "BAD STATE", 0, 5);
+            listResult = bookingService.getUserBookings(user.getId(), "BAD STATE", 0, 5, null);
         } catch (Exception e) {
             assertEquals(BookingUnsupportedStatusException.class, e.getClass());
         }
@@ -503,15 +531,12 @@ public class BookingServiceUnitTest {
 
     @Test
     void getUserItemsBookingsAllTest() throws Exception {
-        when(userRepository.findById(owner.getId())).thenReturn(Optional.of(owner));
-        when(itemRepository.countByOwner(owner.getId())).thenReturn(1);
-        when(itemRepository.findByOwner(owner.getId())).thenReturn(List.of(item));
-        when(bookingRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "start"))))
-                .thenReturn(new PageImpl<>(List.of(semiResult)));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
+        when(userRepository.existsById(owner.getId())).thenReturn(true);
+        when(itemRepository.existsByOwner(owner.getId())).thenReturn(true);
+        when(bookingRepository.findOwnerBookings(owner.getId(), PageRequest.of(0, 5)))
+                .thenReturn(List.of(output));
 
-        listResult = bookingService.getUserItemsBookings(owner.getId(), "ALL", 0, 5);
+        listResult = bookingService.getUserItemsBookings(owner.getId(), "ALL", 0, 5, null);
 
         assertEquals(1, listResult.size());
         assertEquals(output.getId(), listResult.get(0).getId());
@@ -520,15 +545,15 @@ public class BookingServiceUnitTest {
 
     @Test
     void getUserItemsBookingsAllNullParamsTest() throws Exception {
-        when(userRepository.findById(owner.getId())).thenReturn(Optional.of(owner));
-        when(itemRepository.countByOwner(owner.getId())).thenReturn(1);
-        when(itemRepository.findByOwner(owner.getId())).thenReturn(List.of(item));
-        when(bookingRepository.findByItemInOrderByStartDesc(List.of(4))).thenReturn(List.of(semiResult));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
+        when(userRepository.existsById(owner.getId())).thenReturn(true);
+        when(itemRepository.existsByOwner(owner.getId())).thenReturn(true);
+        when(bookingRepository.findOwnerBookings(owner.getId(), Pageable.unpaged()))
+                .thenReturn(List.of(output));
 
-        listResult = bookingService.getUserItemsBookings(owner.getId(), "ALL", null, null);
+        listResult = bookingService.getUserItemsBookings(owner.getId(), "ALL", null, null, null);
 
-        assertEquals(0, listResult.size());
+        assertEquals(1, listResult.size());
+        assertEquals(output.getId(), listResult.get(0).getId());
     }
 
     @Test
@@ -536,30 +561,18 @@ public class BookingServiceUnitTest {
         BookingDto localOutput = BookingDto.builder()
                 .id(2)
                 .start(LocalDateTime.of(2022, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 15))
+                .end(LocalDateTime.of(2100, 6, 29, 10, 15))
                 .item(new MinItemDto(1, "item name"))
                 .booker(new BookerDto(3, "user name"))
                 .status(BookingStatus.WAITING)
                 .build();
 
-        Booking localSemiResult = Booking.builder()
-                .id(2)
-                .start(LocalDateTime.of(2022, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 15))
-                .item(1)
-                .booker(3)
-                .status(BookingStatus.WAITING)
-                .build();
-
-        when(userRepository.findById(owner.getId())).thenReturn(Optional.of(owner));
-        when(itemRepository.countByOwner(owner.getId())).thenReturn(1);
-        when(itemRepository.findByOwner(owner.getId())).thenReturn(List.of(item));
-        when(bookingRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "start"))))
-                .thenReturn(new PageImpl<>(List.of(localSemiResult)));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
+        when(userRepository.existsById(owner.getId())).thenReturn(true);
+        when(itemRepository.existsByOwner(owner.getId())).thenReturn(true);
+        when(bookingRepository.findOwnerCurrentBookings(anyInt(), any(), any()))
+                .thenReturn(List.of(localOutput));
 
-        listResult = bookingService.getUserItemsBookings(owner.getId(), "CURRENT", 0, 5);
+        listResult = bookingService.getUserItemsBookings(owner.getId(), "CURRENT", 0, 5, null);
 
         assertEquals(1, listResult.size());
         assertEquals(localOutput.getId(), listResult.get(0).getId());
@@ -577,24 +590,12 @@ public class BookingServiceUnitTest {
                 .status(BookingStatus.WAITING)
                 .build();
 
-        Booking localSemiResult = Booking.builder()
-                .id(2)
-                .start(LocalDateTime.of(2022, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2022, 6, 29, 10, 15))
-                .item(1)
-                .booker(3)
-                .status(BookingStatus.WAITING)
-                .build();
+        when(userRepository.existsById(owner.getId())).thenReturn(true);
+        when(itemRepository.existsByOwner(owner.getId())).thenReturn(true);
+        when(bookingRepository.findOwnerPastBookings(anyInt(), any(), any()))
+                .thenReturn(List.of(localOutput));
 
-        when(userRepository.findById(owner.getId())).thenReturn(Optional.of(owner));
-        when(itemRepository.countByOwner(owner.getId())).thenReturn(1);
-        when(itemRepository.findByOwner(owner.getId())).thenReturn(List.of(item));
-        when(bookingRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "start"))))
-                .thenReturn(new PageImpl<>(List.of(localSemiResult)));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
-
-        listResult = bookingService.getUserItemsBookings(owner.getId(), "PAST", 0, 5);
+        listResult = bookingService.getUserItemsBookings(owner.getId(), "PAST", 0, 5, null);
 
         assertEquals(1, listResult.size());
         assertEquals(localOutput.getId(), listResult.get(0).getId());
@@ -603,15 +604,12 @@ public class BookingServiceUnitTest {
 
     @Test
     void getUserItemsBookingsFutureTest() throws Exception {
-        when(userRepository.findById(owner.getId())).thenReturn(Optional.of(owner));
-        when(itemRepository.countByOwner(owner.getId())).thenReturn(1);
-        when(itemRepository.findByOwner(owner.getId())).thenReturn(List.of(item));
-        when(bookingRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "start"))))
-                .thenReturn(new PageImpl<>(List.of(semiResult)));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
+        when(userRepository.existsById(owner.getId())).thenReturn(true);
+        when(itemRepository.existsByOwner(owner.getId())).thenReturn(true);
+        when(bookingRepository.findOwnerFutureBookings(anyInt(), any(), any()))
+                .thenReturn(List.of(output));
 
-        listResult = bookingService.getUserItemsBookings(owner.getId(), "FUTURE", 0, 5);
+        listResult = bookingService.getUserItemsBookings(owner.getId(), "FUTURE", 0, 5, null);
 
         assertEquals(1, listResult.size());
         assertEquals(output.getId(), listResult.get(0).getId());
@@ -620,15 +618,13 @@ public class BookingServiceUnitTest {
 
     @Test
     void getUserItemsBookingsWaitingTest() throws Exception {
-        when(userRepository.findById(owner.getId())).thenReturn(Optional.of(owner));
-        when(itemRepository.countByOwner(owner.getId())).thenReturn(1);
-        when(itemRepository.findByOwner(owner.getId())).thenReturn(List.of(item));
-        when(bookingRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "start"))))
-                .thenReturn(new PageImpl<>(List.of(semiResult)));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
+        when(userRepository.existsById(owner.getId())).thenReturn(true);
+        when(itemRepository.existsByOwner(owner.getId())).thenReturn(true);
+        when(bookingRepository.findOwnerBookingsByStatus(
+                owner.getId(), BookingStatus.WAITING, PageRequest.of(0, 5)))
+                .thenReturn(List.of(output));
 
-        listResult = bookingService.getUserItemsBookings(owner.getId(), "WAITING", 0, 5);
+        listResult = bookingService.getUserItemsBookings(owner.getId(), "WAITING", 0, 5, null);
 
         assertEquals(1, listResult.size());
         assertEquals(output.getId(), listResult.get(0).getId());
@@ -639,31 +635,20 @@ public class BookingServiceUnitTest {
     void getUserItemsBookingsRejectedTest() throws Exception {
         BookingDto localOutput = BookingDto.builder()
                 .id(2)
-                .start(LocalDateTime.of(2023, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 15))
+                .start(LocalDateTime.of(2100, 6, 29, 10, 0))
+                .end(LocalDateTime.of(2100, 6, 29, 10, 15))
                 .item(new MinItemDto(1, "item name"))
                 .booker(new BookerDto(3, "user name"))
                 .status(BookingStatus.REJECTED)
                 .build();
 
-        Booking localSemiResult = Booking.builder()
-                .id(2)
-                .start(LocalDateTime.of(2023, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 15))
-                .item(1)
-                .booker(3)
-                .status(BookingStatus.REJECTED)
-                .build();
+        when(userRepository.existsById(owner.getId())).thenReturn(true);
+        when(itemRepository.existsByOwner(owner.getId())).thenReturn(true);
+        when(bookingRepository.findOwnerBookingsByStatus(
+                owner.getId(), BookingStatus.REJECTED, PageRequest.of(0, 5)))
+                .thenReturn(List.of(localOutput));
 
-        when(userRepository.findById(owner.getId())).thenReturn(Optional.of(owner));
-        when(itemRepository.countByOwner(owner.getId())).thenReturn(1);
-        when(itemRepository.findByOwner(owner.getId())).thenReturn(List.of(item));
-        when(bookingRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "start"))))
-                .thenReturn(new PageImpl<>(List.of(localSemiResult)));
-        when(itemRepository.findById(anyInt())).thenReturn(Optional.of(item));
-
-        listResult = bookingService.getUserItemsBookings(owner.getId(), "REJECTED", 0, 5);
+        listResult = bookingService.getUserItemsBookings(owner.getId(), "REJECTED", 0, 5, null);
 
         assertEquals(1, listResult.size());
         assertEquals(localOutput.getId(), listResult.get(0).getId());
@@ -672,12 +657,11 @@ public class BookingServiceUnitTest {
 
     @Test
     void getUserItemsBookingsBadPageParamsTest() throws Exception {
-        when(userRepository.findById(owner.getId())).thenReturn(Optional.of(owner));
-        when(itemRepository.countByOwner(owner.getId())).thenReturn(1);
-        when(itemRepository.findByOwner(owner.getId())).thenReturn(List.of(item));
+        when(userRepository.existsById(owner.getId())).thenReturn(true);
+        when(itemRepository.existsByOwner(owner.getId())).thenReturn(true);
 
         try {
-            listResult = bookingService.getUserItemsBookings(owner.getId(), "REJECTED", 0, null);
+            listResult = bookingService.getUserItemsBookings(owner.getId(), "REJECTED", 0, null, null);
         } catch (Exception e) {
             assertEquals(BookingBadPageParamsException.class, e.getClass());
         }
@@ -685,15 +669,11 @@ public class BookingServiceUnitTest {
 
     @Test
     void getUserItemsBookingsBadStateTest() throws Exception {
-        when(userRepository.findById(owner.getId())).thenReturn(Optional.of(owner));
-        when(itemRepository.countByOwner(owner.getId())).thenReturn(1);
-        when(itemRepository.findByOwner(owner.getId())).thenReturn(List.of(item));
-        when(bookingRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "start"))))
-                .thenReturn(new PageImpl<>(List.of(semiResult)));
+        when(userRepository.existsById(owner.getId())).thenReturn(true);
+        when(itemRepository.existsByOwner(owner.getId())).thenReturn(true);
 
         try {
-            listResult = bookingService.getUserItemsBookings(owner.getId(), "BAD STATE", 0, 5);
+            listResult = bookingService.getUserItemsBookings(owner.getId(), "BAD STATE", 0, 5, null);
         } catch (Exception e) {
             assertEquals(BookingUnsupportedStatusException.class, e.getClass());
         }
@@ -7,11 +7,15 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.shareit.booking.dto.BookingPeriodDto;
 import ru.practicum.shareit.booking.dto.MinBookingDto;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentInputDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityInputDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemWBookingsDto;
+import ru.practicum.shareit.item.dto.MinItemDto;
 import ru.practicum.shareit.item.exceptions.ItemAccessRestrictException;
 import ru.practicum.shareit.item.exceptions.ItemBadPageParamsException;
 import ru.practicum.shareit.item.exceptions.ItemIncompleteDataException;
@@ -206,7 +210,7 @@ public class ItemControllerTest {
 
     @Test
     void getUserItemsTest() throws Exception {
-        when(service.getAllItems(anyInt(), anyInt(), anyInt())).thenReturn(List.of(fullItem));
+        when(service.getAllItems(anyInt(), anyInt(), anyInt(), any())).thenReturn(List.of(fullItem));
 
         mvc.perform(get("/items")
                         .header("X-Sharer-User-Id", 1)
@@ -218,7 +222,7 @@ public class ItemControllerTest {
 
     @Test
     void getUserItemsTestFail() throws Exception {
-        when(service.getAllItems(anyInt(), anyInt(), anyInt())).thenThrow(new ItemBadPageParamsException(""));
+        when(service.getAllItems(anyInt(), anyInt(), anyInt(), any())).thenThrow(new ItemBadPageParamsException(""));
 
         mvc.perform(get("/items")
                         .header("X-Sharer-User-Id", 1)
@@ -230,7 +234,8 @@ public class ItemControllerTest {
 
     @Test
     void searchForItemsTest() throws Exception {
-        when(service.searchItems(anyString(), anyInt(), anyInt(), anyInt())).thenReturn(List.of(minItem));
+        when(service.searchItems(anyString(), anyInt(), anyInt(), anyInt(), any(), any(), any()))
+                .thenReturn(List.of(minItem));
 
         mvc.perform(get("/items/search")
                         .header("X-Sharer-User-Id", 1)
@@ -240,4 +245,97 @@ public class ItemControllerTest {
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk());
     }
+
+    @Test
+    void searchForFreeItemsTest() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2100, 6, 29, 10, 0);
+        LocalDateTime end = LocalDateTime.of(2100, 6, 30, 10, 0);
+        when(service.searchItems("request", 1, null, null, null, start, end)).thenReturn(List.of(minItem));
+
+        mvc.perform(get("/items/search")
+                        .header("X-Sharer-User-Id", 1)
+                        .param("text", "request")
+                        .param("start", start.format(formatter))
+                        .param("end", end.format(formatter))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(minItem.getId())));
+    }
+
+    @Test
+    void suggestItemsTest() throws Exception {
+        when(service.suggestItems(anyString(), anyInt(), any())).thenReturn(List.of(new MinItemDto(2, "item")));
+
+        mvc.perform(get("/items/suggest")
+                        .header("X-Sharer-User-Id", 1)
+                        .param("prefix", "it")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(2)))
+                .andExpect(jsonPath("$[0].name", is("item")));
+    }
+
+    @Test
+    void getAvailabilityTest() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2100, 6, 29, 10, 0);
+        LocalDateTime end = LocalDateTime.of(2100, 6, 30, 10, 0);
+        when(service.getAvailability(2, 1, start, end)).thenReturn(new ItemAvailabilityDto(2, false,
+                List.of(new BookingPeriodDto(4, start.minusHours(1), start.plusHours(1)))));
+
+        mvc.perform(get("/items/2/availability")
+                        .header("X-Sharer-User-Id", 1)
+                        .param("start", start.format(formatter))
+                        .param("end", end.format(formatter))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.itemId", is(2)))
+                .andExpect(jsonPath("$.available", is(false)))
+                .andExpect(jsonPath("$.busy[0].bookingId", is(4)));
+
+        mvc.perform(get("/items/2/availability")
+                        .header("X-Sharer-User-Id", 1)
+                        .param("start", start.format(formatter))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        when(service.getAvailability(2, 5, start, end)).thenThrow(new UserNotFoundException(""));
+
+        mvc.perform(get("/items/2/availability")
+                        .header("X-Sharer-User-Id", 5)
+                        .param("start", start.format(formatter))
+                        .param("end", end.format(formatter))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void postAvailabilityTest() throws Exception {
+        ItemAvailabilityInputDto request = new ItemAvailabilityInputDto(List.of(2, 3),
+                LocalDateTime.of(2100, 6, 29, 10, 0),
+                LocalDateTime.of(2100, 6, 30, 10, 0));
+        when(service.getAvailability(request, 1)).thenReturn(List.of(new ItemAvailabilityDto(2, true, List.of()),
+                new ItemAvailabilityDto(3, false, List.of())));
+
+        mvc.perform(post("/items/availability")
+                        .header("X-Sharer-User-Id", 1)
+                        .content(mapper.writeValueAsString(request))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].itemId", is(2)))
+                .andExpect(jsonPath("$[0].available", is(true)))
+                .andExpect(jsonPath("$[1].available", is(false)));
+
+        when(service.getAvailability(any(ItemAvailabilityInputDto.class), anyInt()))
+                .thenThrow(new ItemIncompleteDataException(""));
+
+        mvc.perform(post("/items/availability")
+                        .header("X-Sharer-User-Id", 1)
+                        .content(mapper.writeValueAsString(request))
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
 }
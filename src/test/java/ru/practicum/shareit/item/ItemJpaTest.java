@@ -6,6 +6,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.storage.ItemRepository;
 import ru.practicum.shareit.user.model.User;
@@ -16,6 +19,8 @@ import javax.persistence.TypedQuery;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
@@ -92,13 +97,29 @@ public class ItemJpaTest {
         assertEquals(item3.getName(), semiResult.getName());
         assertEquals(item3.getDescription(), semiResult.getDescription());
 
-        List<Item> result = itemRepository.search("item");
+        List<Item> result = itemRepository.search("item", Pageable.unpaged()).getContent();
         assertEquals(1, result.size());
 
-        result = itemRepository.search("description");
+        result = itemRepository.search("description", Pageable.unpaged()).getContent();
         assertEquals(2, result.size());
 
-        result = itemRepository.search("something");
+        result = itemRepository.search("something", Pageable.unpaged()).getContent();
         assertEquals(1, result.size());
+
+        // страница набирается только из подходящих вещей
+        Slice<Item> slice = itemRepository.search("description", PageRequest.of(0, 1));
+        assertEquals(1, slice.getContent().size());
+        assertEquals(item1.getId(), slice.getContent().get(0).getId());
+        assertTrue(slice.hasNext());
+
+        slice = itemRepository.search("description", PageRequest.of(1, 1));
+        assertEquals(1, slice.getContent().size());
+        assertEquals(item3.getId(), slice.getContent().get(0).getId());
+        assertFalse(slice.hasNext());
+
+        // подсказки: только доступные вещи, название начинается с префикса
+        assertEquals(1, itemRepository.suggest("ite", PageRequest.of(0, 5)).size());
+        assertEquals(item3.getId(), itemRepository.suggest("some", PageRequest.of(0, 5)).get(0).getId());
+        assertEquals(0, itemRepository.suggest("desc", PageRequest.of(0, 5)).size());
     }
 }
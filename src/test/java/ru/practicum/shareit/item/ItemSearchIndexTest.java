@@ -0,0 +1,182 @@
+package ru.practicum.shareit.item;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.storage.IndexItemSearchStorage;
+import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.item.storage.ItemSearchIndex;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ItemSearchIndexTest {
+    ItemRepository itemRepository = mock(ItemRepository.class);
+
+    Item drill = Item.builder()
+            .id(1)
+            .name("Дрель")
+            .description("Простая дрель")
+            .available(true)
+            .owner(1)
+            .build();
+
+    Item screwdriver = Item.builder()
+            .id(2)
+            .name("Отвертка")
+            .description("Аккумуляторная отвертка и ДРЕЛЬ")
+            .available(true)
+            .owner(1)
+            .build();
+
+    Item saw = Item.builder()
+            .id(3)
+            .name("Saw")
+            .description("Hand saw")
+            .available(false)
+            .owner(2)
+            .build();
+
+    private List<Integer> ids(List<Item> items) {
+        return items.stream()
+                .map(Item::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void searchTest() throws Exception {
+        ItemSearchIndex index = new ItemSearchIndex();
+        index.put(drill);
+        index.put(screwdriver);
+        index.put(saw);
+
+        assertEquals(List.of(1, 2), ids(index.search("дРеЛь", 0, 10)));
+        assertEquals(List.of(2), ids(index.search("аккум", 0, 10)));
+        assertEquals(List.of(1, 2), ids(index.search("ре", 0, 10)));
+        assertEquals(List.of(2), ids(index.search("дрель", 1, 10)));
+        assertEquals(List.of(1), ids(index.search("дрель", 0, 1)));
+        assertEquals(List.of(2), ids(index.searchAfter("дрель", 1, 10)));
+        assertTrue(index.searchAfter("дрель", 2, 10).isEmpty());
+        assertTrue(index.search("пила", 0, 10).isEmpty());
+        // недоступные вещи не находятся
+        assertTrue(index.search("saw", 0, 10).isEmpty());
+    }
+
+    @Test
+    void resetTest() throws Exception {
+        ItemSearchIndex index = new ItemSearchIndex();
+        index.put(saw);
+        // порядок вещей не важен, старое содержимое заменяется
+        index.reset(List.of(screwdriver, drill));
+
+        assertEquals(2, index.size());
+        assertEquals(List.of(1, 2), ids(index.search("дрель", 0, 10)));
+        assertEquals(List.of(2), ids(index.search("аккум", 0, 10)));
+        assertTrue(index.search("hand", 0, 10).isEmpty());
+
+        // после reset вещи по-прежнему добавляются и удаляются по одной
+        index.put(Item.builder()
+                .id(4)
+                .name("Дрель-миксер")
+                .description("Миксер")
+                .available(true)
+                .owner(2)
+                .build());
+        index.remove(1);
+        assertEquals(List.of(2, 4), ids(index.search("дрель", 0, 10)));
+    }
+
+    @Test
+    void updateAndRemoveTest() throws Exception {
+        ItemSearchIndex index = new ItemSearchIndex();
+        index.put(drill);
+        index.put(saw);
+
+        saw.setAvailable(true);
+        assertTrue(index.search("saw", 0, 10).isEmpty());
+        index.put(saw);
+        assertEquals(List.of(3), ids(index.search("saw", 0, 10)));
+
+        drill.setName("Перфоратор");
+        drill.setDescription("Мощный перфоратор");
+        index.put(drill);
+        assertTrue(index.search("дрель", 0, 10).isEmpty());
+        assertEquals(List.of(1), ids(index.search("перфо", 0, 10)));
+
+        index.remove(1);
+        assertTrue(index.search("перфо", 0, 10).isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void storageSearchTest() throws Exception {
+        when(itemRepository.findByIdGreaterThanOrderById(eq(0), any()))
+                .thenReturn(List.of(drill, screwdriver, saw));
+
+        IndexItemSearchStorage storage = new IndexItemSearchStorage(itemRepository);
+        storage.rebuild();
+
+        assertEquals(List.of(1, 2), ids(storage.search("дрель", Pageable.unpaged()).getContent()));
+
+        Slice<Item> slice = storage.search("дрель", PageRequest.of(0, 1));
+        assertEquals(List.of(1), ids(slice.getContent()));
+        assertTrue(slice.hasNext());
+
+        slice = storage.search("дрель", PageRequest.of(1, 1));
+        assertEquals(List.of(2), ids(slice.getContent()));
+        assertFalse(slice.hasNext());
+    }
+
+    @Test
+    void checkConsistencyTest() throws Exception {
+        when(itemRepository.findByIdGreaterThanOrderById(eq(0), any()))
+                .thenReturn(List.of(drill, screwdriver));
+
+        IndexItemSearchStorage storage = new IndexItemSearchStorage(itemRepository);
+        storage.rebuild();
+        assertEquals(0, storage.checkConsistency());
+
+        // изменения в БД в обход сервиса: вещь удалена, другая изменена и добавлена новая
+        Item changed = new Item(screwdriver.getId(), screwdriver.getName(), screwdriver.getDescription(),
+                false, screwdriver.getOwner(), null);
+        when(itemRepository.findByIdGreaterThanOrderById(eq(0), any()))
+                .thenReturn(List.of(changed, saw));
+
+        assertEquals(3, storage.checkConsistency());
+        assertEquals(2, storage.getIndex().size());
+        assertTrue(storage.search("дрель", Pageable.unpaged()).isEmpty());
+        assertEquals(0, storage.checkConsistency());
+    }
+
+    @Test
+    void checkConsistencyKeepsConcurrentWritesTest() throws Exception {
+        when(itemRepository.findByIdGreaterThanOrderById(eq(0), any()))
+                .thenReturn(List.of(drill, screwdriver));
+
+        IndexItemSearchStorage storage = new IndexItemSearchStorage(itemRepository);
+        storage.rebuild();
+
+        // сверка читает старые строки, а в это время вещь переименована
+        // и еще одна вещь удалена через сервис
+        Item renamed = new Item(drill.getId(), "пила", drill.getDescription(), true, drill.getOwner(), null);
+        when(itemRepository.findByIdGreaterThanOrderById(eq(0), any())).thenAnswer(invocation -> {
+            storage.onSave(renamed);
+            storage.onDelete(screwdriver.getId());
+            return List.of(drill);
+        });
+
+        assertEquals(0, storage.checkConsistency());
+        assertEquals(renamed, storage.getIndex().get(drill.getId()));
+        assertEquals(1, storage.getIndex().size());
+    }
+}
@@ -1,26 +1,39 @@
 package ru.practicum.shareit.item;
 
 import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.BookingStatus;
 import ru.practicum.shareit.booking.storage.BookingRepository;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentInputDto;
+import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemWBookingsDto;
+import ru.practicum.shareit.item.dto.MinItemDto;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.service.ItemService;
 import ru.practicum.shareit.item.storage.ItemRepository;
 import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserIdIndex;
 import ru.practicum.shareit.user.storage.UserRepository;
+import ru.practicum.shareit.util.PageCursor;
 
+import javax.persistence.EntityManagerFactory;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Transactional
 @SpringBootTest(
@@ -32,6 +45,9 @@ public class ItemServiceIntegralTest {
     private final ItemRepository itemRepository;
     private final BookingRepository bookingRepository;
     private final ItemService itemService;
+    private final EntityManagerFactory entityManagerFactory;
+    private final CacheManager cacheManager;
+    private final UserIdIndex userIdIndex;
 
     User owner = User.builder()
             .id(0)
@@ -86,6 +102,30 @@ public class ItemServiceIntegralTest {
         assertEquals(commentInput.getCreated(), result.getCreated());
     }
 
+    @Test
+    void getItemCommentsTest() throws Exception {
+        owner.setId(userRepository.save(owner).getId());
+        booker.setId(userRepository.save(booker).getId());
+
+        item.setOwner(owner.getId());
+        item.setId(itemRepository.save(item).getId());
+
+        booking.setItem(item.getId());
+        booking.setBooker(booker.getId());
+        booking.setId(bookingRepository.save(booking).getId());
+
+        itemService.addComment(commentInput, item.getId(), booker.getId());
+        itemService.addComment(new CommentInputDto("second comment", commentInput.getCreated().plusMinutes(1)),
+                item.getId(), booker.getId());
+
+        ItemWBookingsDto result = itemService.getItem(item.getId(), booker.getId());
+
+        assertEquals(2, result.getComments().size());
+        assertEquals(commentInput.getText(), result.getComments().get(0).getText());
+        assertEquals(booker.getName(), result.getComments().get(0).getAuthorName());
+        assertEquals("second comment", result.getComments().get(1).getText());
+    }
+
     @Test
     void getAllItemsTest() throws Exception {
         owner.setId(userRepository.save(owner).getId());
@@ -99,7 +139,7 @@ public class ItemServiceIntegralTest {
         booking.setId(bookingRepository.save(booking).getId());
 
         itemService.addComment(commentInput, item.getId(), booker.getId());
-        List<ItemWBookingsDto> result = itemService.getAllItems(owner.getId(), 0, 5);
+        List<ItemWBookingsDto> result = itemService.getAllItems(owner.getId(), 0, 5, null);
 
         assertEquals(1, result.size());
         assertEquals(item.getName(), result.get(0).getName());
@@ -110,4 +150,233 @@ public class ItemServiceIntegralTest {
         assertEquals(1, result.get(0).getComments().size());
         assertEquals(commentInput.getText(), result.get(0).getComments().get(0).getText());
     }
+
+    @Test
+    void getAllItemsPagedSkipsUnavailableTest() throws Exception {
+        owner.setId(userRepository.save(owner).getId());
+
+        item.setOwner(owner.getId());
+        item.setId(itemRepository.save(item).getId());
+        int unavailableId = itemRepository.save(Item.builder()
+                .name("unavailable")
+                .description("unavailable item")
+                .available(false)
+                .owner(owner.getId())
+                .build()).getId();
+
+        // постраничный вывод (по номеру страницы и по курсору) - только доступные вещи
+        List<ItemWBookingsDto> paged = itemService.getAllItems(owner.getId(), 0, 5, null);
+        assertEquals(List.of(item.getId()), paged.stream().map(ItemWBookingsDto::getId).collect(Collectors.toList()));
+        assertTrue(itemService.getAllItems(owner.getId(), null, 5, new PageCursor(item.getId()).encode()).isEmpty());
+
+        // без пагинации - все вещи владельца
+        List<ItemWBookingsDto> all = itemService.getAllItems(owner.getId(), null, null, null);
+        assertEquals(List.of(item.getId(), unavailableId),
+                all.stream().map(ItemWBookingsDto::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    void streamAllItemsTest() throws Exception {
+        owner.setId(userRepository.save(owner).getId());
+        booker.setId(userRepository.save(booker).getId());
+
+        item.setOwner(owner.getId());
+        item.setId(itemRepository.save(item).getId());
+        booking.setItem(item.getId());
+        booking.setBooker(booker.getId());
+        bookingRepository.save(booking);
+        itemService.addComment(commentInput, item.getId(), booker.getId());
+
+        // вещей больше, чем помещается в одну порцию потока
+        for (int i = 0; i < 120; i++) {
+            itemRepository.save(Item.builder()
+                    .name("item " + i)
+                    .description("item description")
+                    .available(true)
+                    .owner(owner.getId())
+                    .build());
+        }
+
+        List<ItemWBookingsDto> expected = itemService.getAllItems(owner.getId(), null, null, null);
+        List<ItemWBookingsDto> streamed = new ArrayList<>();
+        itemService.streamAllItems(owner.getId()).forEach(streamed::add);
+
+        assertEquals(121, streamed.size());
+        assertEquals(expected, streamed);
+        assertEquals(booker.getId(), streamed.get(0).getLastBooking().getBookerId());
+        assertEquals(1, streamed.get(0).getComments().size());
+    }
+
+    @Test
+    void getAllItemsQueryCountTest() throws Exception {
+        owner.setId(userRepository.save(owner).getId());
+        booker.setId(userRepository.save(booker).getId());
+
+        // у каждой вещи есть прошедшее и будущее бронирование и комментарий
+        for (int i = 0; i < 5; i++) {
+            Item localItem = Item.builder()
+                    .name("item " + i)
+                    .description("item description")
+                    .available(true)
+                    .owner(owner.getId())
+                    .build();
+            localItem.setId(itemRepository.save(localItem).getId());
+
+            bookingRepository.save(Booking.builder()
+                    .start(booking.getStart().plusDays(i))
+                    .end(booking.getEnd().plusDays(i))
+                    .item(localItem.getId())
+                    .booker(booker.getId())
+                    .status(BookingStatus.APPROVED)
+                    .build());
+            bookingRepository.save(Booking.builder()
+                    .start(LocalDateTime.now().plusDays(i + 1))
+                    .end(LocalDateTime.now().plusDays(i + 2))
+                    .item(localItem.getId())
+                    .booker(booker.getId())
+                    .status(BookingStatus.WAITING)
+                    .build());
+            itemService.addComment(commentInput, localItem.getId(), booker.getId());
+        }
+        // отложенные изменения не должны попасть в подсчет запросов,
+        // кэш пользователей и вещей очищается, чтобы считать запросы без него.
+        // Пользователи сохранены в обход UserService, поэтому их id
+        // добавляются в UserIdIndex вручную: существование проверяется без запроса
+        userRepository.flush();
+        userIdIndex.add(owner.getId());
+        userIdIndex.add(booker.getId());
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        List<ItemWBookingsDto> result = itemService.getAllItems(owner.getId(), null, null, null);
+        long queries = statistics.getPrepareStatementCount();
+
+        statistics.setStatisticsEnabled(false);
+
+        assertEquals(5, result.size());
+        for (ItemWBookingsDto itemDto : result) {
+            assertEquals(booker.getId(), itemDto.getLastBooking().getBookerId());
+            assertEquals(booker.getId(), itemDto.getNextBooking().getBookerId());
+            assertEquals(1, itemDto.getComments().size());
+            assertEquals(booker.getName(), itemDto.getComments().get(0).getAuthorName());
+        }
+        // число запросов не зависит от количества вещей
+        assertEquals(5, queries);
+    }
+
+    @Test
+    void searchFreeItemsTest() throws Exception {
+        owner.setId(userRepository.save(owner).getId());
+        booker.setId(userRepository.save(booker).getId());
+
+        List<Integer> itemIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            itemIds.add(itemRepository.save(Item.builder()
+                    .name("free search item")
+                    .description("item description")
+                    .available(true)
+                    .owner(owner.getId())
+                    .build()).getId());
+        }
+
+        LocalDateTime start = LocalDateTime.of(2100, 6, 29, 10, 0);
+        LocalDateTime end = LocalDateTime.of(2100, 6, 30, 10, 0);
+        // вещь 0 занята одобренным бронированием, 1 - ожидающим, у 2 бронирование
+        // отклонено, у 3 - заканчивается ровно к началу периода
+        BookingStatus[] statuses = {BookingStatus.APPROVED, BookingStatus.WAITING, BookingStatus.REJECTED};
+        for (int i = 0; i < statuses.length; i++) {
+            bookingRepository.save(Booking.builder()
+                    .start(start.minusHours(1))
+                    .end(start.plusHours(1))
+                    .item(itemIds.get(i))
+                    .booker(booker.getId())
+                    .status(statuses[i])
+                    .build());
+        }
+        bookingRepository.save(Booking.builder()
+                .start(start.minusHours(2))
+                .end(start)
+                .item(itemIds.get(3))
+                .booker(booker.getId())
+                .status(BookingStatus.APPROVED)
+                .build());
+
+        List<Integer> found = new ArrayList<>();
+        itemService.searchItems("free search", booker.getId(), null, null, null, start, end)
+                .forEach(dto -> found.add(dto.getId()));
+        assertEquals(List.of(itemIds.get(2), itemIds.get(3)), found);
+
+        found.clear();
+        itemService.searchItems("free search", booker.getId(), null, 1, "", start, end)
+                .forEach(dto -> found.add(dto.getId()));
+        assertEquals(List.of(itemIds.get(2)), found);
+
+        found.clear();
+        itemService.searchItems("free search", booker.getId(), null, null, null, end, end.plusDays(1))
+                .forEach(dto -> found.add(dto.getId()));
+        assertEquals(itemIds, found);
+    }
+
+    @Test
+    void suggestFromDbEscapesWildcardsTest() throws Exception {
+        owner.setId(userRepository.save(owner).getId());
+        int percentId = itemRepository.save(Item.builder()
+                .name("50% скидка")
+                .description("item description")
+                .available(true)
+                .owner(owner.getId())
+                .build()).getId();
+        itemRepository.save(Item.builder()
+                .name("500 пакетов")
+                .description("item description")
+                .available(true)
+                .owner(owner.getId())
+                .build());
+
+        // % после экранирования - обычный символ, а не шаблон
+        List<Integer> found = itemRepository.suggest("50\\%", PageRequest.of(0, 10)).stream()
+                .map(MinItemDto::getId)
+                .collect(Collectors.toList());
+        assertEquals(List.of(percentId), found);
+        assertTrue(itemRepository.suggest("50\\_", PageRequest.of(0, 10)).isEmpty());
+    }
+
+    // без общей транзакции теста: иначе save изменяет тот же управляемый
+    // экземпляр вещи, что лежит в кэше, и устаревшая запись кэша не видна
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void updateItemRefreshesCacheTest() throws Exception {
+        User cachedOwner = userRepository.save(User.builder()
+                .name("cached owner")
+                .email("cached.owner@ya.ru")
+                .build());
+        userIdIndex.add(cachedOwner.getId());
+        Item cachedItem = itemRepository.save(Item.builder()
+                .name("item")
+                .description("item description")
+                .available(true)
+                .owner(cachedOwner.getId())
+                .build());
+        try {
+            // первый getItem кладет вещь в кэш items
+            assertEquals("item", itemService.getItem(cachedItem.getId(), cachedOwner.getId()).getName());
+
+            itemService.updateItem(ItemDto.builder()
+                    .name("new name")
+                    .available(false)
+                    .build(), cachedItem.getId(), cachedOwner.getId());
+
+            ItemWBookingsDto result = itemService.getItem(cachedItem.getId(), cachedOwner.getId());
+            assertEquals("new name", result.getName());
+            assertEquals("item description", result.getDescription());
+            assertEquals(false, result.getAvailable());
+        } finally {
+            itemRepository.deleteById(cachedItem.getId());
+            userRepository.deleteById(cachedOwner.getId());
+            cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        }
+    }
 }
@@ -1,17 +1,21 @@
 package ru.practicum.shareit.item;
 
 import org.junit.jupiter.api.Test;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.shareit.booking.dto.MinBookingDto;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.storage.BookingAvailabilityStorage;
 import ru.practicum.shareit.booking.storage.BookingRepository;
 import ru.practicum.shareit.item.dto.CommentDto;
 import ru.practicum.shareit.item.dto.CommentInputDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemWBookingsDto;
+import ru.practicum.shareit.item.dto.MinItemDto;
 import ru.practicum.shareit.item.exceptions.ItemAccessRestrictException;
 import ru.practicum.shareit.item.exceptions.ItemBadPageParamsException;
 import ru.practicum.shareit.item.exceptions.ItemIncompleteDataException;
@@ -22,18 +26,25 @@ import ru.practicum.shareit.item.service.ItemService;
 import ru.practicum.shareit.item.service.ItemServiceImpl;
 import ru.practicum.shareit.item.storage.CommentRepository;
 import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.item.storage.ItemSuggestStorage;
+import ru.practicum.shareit.item.storage.LikeItemSearchStorage;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
 import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.storage.UserIdIndex;
 import ru.practicum.shareit.user.storage.UserRepository;
 
+import javax.persistence.EntityManager;
 import java.time.LocalDateTime;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -45,7 +56,11 @@ public class ItemServiceUnitTest {
     BookingRepository bookingRepository = mock(BookingRepository.class);
     CommentRepository commentRepository = mock(CommentRepository.class);
     ItemService itemService
-            = new ItemServiceImpl(itemRepository, userRepository, bookingRepository, commentRepository);
+            = new ItemServiceImpl(itemRepository, userRepository, new UserIdIndex(userRepository),
+            bookingRepository, commentRepository,
+            new LikeItemSearchStorage(itemRepository), new ItemSuggestStorage(itemRepository, 100),
+            mock(TransactionTemplate.class), mock(EntityManager.class),
+            new BookingAvailabilityStorage(bookingRepository));
 
     ItemDto itemDto = ItemDto.builder()
             .id(1)
@@ -57,13 +72,13 @@ public class ItemServiceUnitTest {
 
     CommentInputDto commentInput
             = new CommentInputDto("comment text",
-            LocalDateTime.of(2023, 6, 29, 10, 15));
+            LocalDateTime.of(2100, 6, 29, 10, 15));
 
     CommentDto commentDto = CommentDto.builder()
             .id(3)
             .text("comment text")
             .authorName("booker name")
-            .created(LocalDateTime.of(2023, 6, 29, 10, 15))
+            .created(LocalDateTime.of(2100, 6, 29, 10, 15))
             .build();
 
     Comment comment = Comment.builder()
@@ -71,7 +86,7 @@ public class ItemServiceUnitTest {
             .text("comment text")
             .item(1)
             .author(5)
-            .created(LocalDateTime.of(2023, 6, 29, 10, 15))
+            .created(LocalDateTime.of(2100, 6, 29, 10, 15))
             .build();
 
     Item item = Item.builder()
@@ -175,11 +190,9 @@ public class ItemServiceUnitTest {
     @Test
     void getItemTest() throws Exception {
         when(itemRepository.findById(item.getId())).thenReturn(Optional.of(item));
-        when(bookingRepository
-                .findByItemInOrderByStartAsc(Collections.singletonList(item.getId())))
-                .thenReturn(List.of(booking));
-        when(commentRepository.findByItem(item.getId())).thenReturn(List.of(comment));
-        when(userRepository.findById(comment.getAuthor())).thenReturn(Optional.of(booker));
+        when(bookingRepository.findFirstByItemAndStartBeforeOrderByStartDesc(eq(item.getId()), any()))
+                .thenReturn(Optional.of(booking));
+        when(commentRepository.findCommentDtos(item.getId(), Pageable.unpaged())).thenReturn(List.of(commentDto));
 
         fullResult = itemService.getItem(item.getId(), owner.getId());
 
@@ -196,8 +209,8 @@ public class ItemServiceUnitTest {
     void getItemSingleBookingInFutureTest() throws Exception {
         Booking localBooking = Booking.builder()
                 .id(6)
-                .start(LocalDateTime.of(2023, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 15))
+                .start(LocalDateTime.of(2100, 6, 29, 10, 0))
+                .end(LocalDateTime.of(2100, 6, 29, 10, 15))
                 .item(1)
                 .booker(5)
                 .status(BookingStatus.APPROVED)
@@ -213,11 +226,9 @@ public class ItemServiceUnitTest {
                 .build();
 
         when(itemRepository.findById(item.getId())).thenReturn(Optional.of(item));
-        when(bookingRepository
-                .findByItemInOrderByStartAsc(Collections.singletonList(item.getId())))
-                .thenReturn(List.of(localBooking));
-        when(commentRepository.findByItem(item.getId())).thenReturn(List.of(comment));
-        when(userRepository.findById(comment.getAuthor())).thenReturn(Optional.of(booker));
+        when(bookingRepository.findFirstByItemAndStartGreaterThanEqualOrderByStartAsc(eq(item.getId()), any()))
+                .thenReturn(Optional.of(localBooking));
+        when(commentRepository.findCommentDtos(item.getId(), Pageable.unpaged())).thenReturn(List.of(commentDto));
 
         fullResult = itemService.getItem(item.getId(), owner.getId());
 
@@ -243,8 +254,8 @@ public class ItemServiceUnitTest {
 
         Booking localBooking2 = Booking.builder()
                 .id(7)
-                .start(LocalDateTime.of(2023, 6, 29, 10, 20))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 25))
+                .start(LocalDateTime.of(2100, 6, 29, 10, 20))
+                .end(LocalDateTime.of(2100, 6, 29, 10, 25))
                 .item(1)
                 .booker(4)
                 .status(BookingStatus.APPROVED)
@@ -261,11 +272,11 @@ public class ItemServiceUnitTest {
                 .build();
 
         when(itemRepository.findById(item.getId())).thenReturn(Optional.of(item));
-        when(bookingRepository
-                .findByItemInOrderByStartAsc(Collections.singletonList(item.getId())))
-                .thenReturn(List.of(localBooking1, localBooking2));
-        when(commentRepository.findByItem(item.getId())).thenReturn(List.of(comment));
-        when(userRepository.findById(comment.getAuthor())).thenReturn(Optional.of(booker));
+        when(bookingRepository.findFirstByItemAndStartBeforeOrderByStartDesc(eq(item.getId()), any()))
+                .thenReturn(Optional.of(localBooking1));
+        when(bookingRepository.findFirstByItemAndStartGreaterThanEqualOrderByStartAsc(eq(item.getId()), any()))
+                .thenReturn(Optional.of(localBooking2));
+        when(commentRepository.findCommentDtos(item.getId(), Pageable.unpaged())).thenReturn(List.of(commentDto));
 
         fullResult = itemService.getItem(item.getId(), owner.getId());
 
@@ -282,8 +293,8 @@ public class ItemServiceUnitTest {
     void getItemMoreThanOneBookingInFutureTest() throws Exception {
         Booking localBooking1 = Booking.builder()
                 .id(6)
-                .start(LocalDateTime.of(2023, 6, 29, 10, 0))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 15))
+                .start(LocalDateTime.of(2100, 6, 29, 10, 0))
+                .end(LocalDateTime.of(2100, 6, 29, 10, 15))
                 .item(1)
                 .booker(5)
                 .status(BookingStatus.APPROVED)
@@ -291,8 +302,8 @@ public class ItemServiceUnitTest {
 
         Booking localBooking2 = Booking.builder()
                 .id(7)
-                .start(LocalDateTime.of(2023, 6, 29, 10, 20))
-                .end(LocalDateTime.of(2023, 6, 29, 10, 25))
+                .start(LocalDateTime.of(2100, 6, 29, 10, 20))
+                .end(LocalDateTime.of(2100, 6, 29, 10, 25))
                 .item(1)
                 .booker(4)
                 .status(BookingStatus.APPROVED)
@@ -308,11 +319,9 @@ public class ItemServiceUnitTest {
                 .build();
 
         when(itemRepository.findById(item.getId())).thenReturn(Optional.of(item));
-        when(bookingRepository
-                .findByItemInOrderByStartAsc(Collections.singletonList(item.getId())))
-                .thenReturn(List.of(localBooking1, localBooking2));
-        when(commentRepository.findByItem(item.getId())).thenReturn(List.of(comment));
-        when(userRepository.findById(comment.getAuthor())).thenReturn(Optional.of(booker));
+        when(bookingRepository.findFirstByItemAndStartGreaterThanEqualOrderByStartAsc(eq(item.getId()), any()))
+                .thenReturn(Optional.of(localBooking1));
+        when(commentRepository.findCommentDtos(item.getId(), Pageable.unpaged())).thenReturn(List.of(commentDto));
 
         fullResult = itemService.getItem(item.getId(), owner.getId());
 
@@ -328,8 +337,7 @@ public class ItemServiceUnitTest {
     @Test
     void getItemNotByOwnerTest() throws Exception {
         when(itemRepository.findById(item.getId())).thenReturn(Optional.of(item));
-        when(commentRepository.findByItem(item.getId())).thenReturn(List.of(comment));
-        when(userRepository.findById(comment.getAuthor())).thenReturn(Optional.of(booker));
+        when(commentRepository.findCommentDtos(item.getId(), Pageable.unpaged())).thenReturn(List.of(commentDto));
 
         fullResult = itemService.getItem(item.getId(), booker.getId());
 
@@ -345,11 +353,7 @@ public class ItemServiceUnitTest {
     @Test
     void getItemNoBookingsTest() throws Exception {
         when(itemRepository.findById(item.getId())).thenReturn(Optional.of(item));
-        when(bookingRepository
-                .findByItemInOrderByStartAsc(Collections.singletonList(item.getId())))
-                .thenReturn(List.of());
-        when(commentRepository.findByItem(item.getId())).thenReturn(List.of(comment));
-        when(userRepository.findById(comment.getAuthor())).thenReturn(Optional.of(booker));
+        when(commentRepository.findCommentDtos(item.getId(), Pageable.unpaged())).thenReturn(List.of(commentDto));
 
         fullResult = itemService.getItem(item.getId(), owner.getId());
 
@@ -376,16 +380,13 @@ public class ItemServiceUnitTest {
     @Test
     void getAllItemsTest() throws Exception {
         when(userRepository.existsById(anyInt())).thenReturn(true);
-        when(itemRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.ASC, "id"))))
-                .thenReturn(new PageImpl<>(List.of(item)));
-        when(bookingRepository
-                .findByItemInOrderByStartAsc(Collections.singletonList(item.getId())))
-                .thenReturn(List.of(booking));
-        when(commentRepository.findByItem(item.getId())).thenReturn(List.of(comment));
-        when(userRepository.findById(comment.getAuthor())).thenReturn(Optional.of(booker));
+        when(itemRepository.findByOwnerAndAvailableTrueOrderById(owner.getId(), PageRequest.of(0, 5))).thenReturn(List.of(item));
+        when(bookingRepository.findLastBookings(eq(List.of(item.getId())), any())).thenReturn(List.of(booking));
+        when(bookingRepository.findNextBookings(eq(List.of(item.getId())), any())).thenReturn(List.of());
+        when(commentRepository.findByItemIn(List.of(item.getId()))).thenReturn(List.of(comment));
+        when(userRepository.findAllById(Set.of(comment.getAuthor()))).thenReturn(List.of(booker));
 
-        List<ItemWBookingsDto> resultList = itemService.getAllItems(owner.getId(), 0, 5);
+        List<ItemWBookingsDto> resultList = itemService.getAllItems(owner.getId(), 0, 5, null);
 
         assertEquals(1, resultList.size());
         assertEquals(output.getId(), resultList.get(0).getId());
@@ -400,13 +401,12 @@ public class ItemServiceUnitTest {
     void getAllItemsNullParamsTest() throws Exception {
         when(userRepository.existsById(anyInt())).thenReturn(true);
         when(itemRepository.findByOwnerOrderById(owner.getId())).thenReturn(List.of(item));
-        when(bookingRepository
-                .findByItemInOrderByStartAsc(Collections.singletonList(item.getId())))
-                .thenReturn(List.of(booking));
-        when(commentRepository.findByItem(item.getId())).thenReturn(List.of(comment));
-        when(userRepository.findById(comment.getAuthor())).thenReturn(Optional.of(booker));
+        when(bookingRepository.findLastBookings(eq(List.of(item.getId())), any())).thenReturn(List.of(booking));
+        when(bookingRepository.findNextBookings(eq(List.of(item.getId())), any())).thenReturn(List.of());
+        when(commentRepository.findByItemIn(List.of(item.getId()))).thenReturn(List.of(comment));
+        when(userRepository.findAllById(Set.of(comment.getAuthor()))).thenReturn(List.of(booker));
 
-        List<ItemWBookingsDto> resultList = itemService.getAllItems(owner.getId(), null, null);
+        List<ItemWBookingsDto> resultList = itemService.getAllItems(owner.getId(), null, null, null);
 
         assertEquals(1, resultList.size());
         assertEquals(output.getId(), resultList.get(0).getId());
@@ -417,12 +417,32 @@ public class ItemServiceUnitTest {
         assertEquals(output.getComments().size(), resultList.get(0).getComments().size());
     }
 
+    @Test
+    void getAllItemsBatchesIdsTest() throws Exception {
+        List<Item> items = new ArrayList<>();
+        for (int i = 1; i <= 1001; i++)
+            items.add(item.toBuilder().id(i).build());
+        when(userRepository.existsById(anyInt())).thenReturn(true);
+        when(itemRepository.findByOwnerOrderById(owner.getId())).thenReturn(items);
+        when(bookingRepository.findLastBookings(any(), any())).thenReturn(List.of());
+        when(bookingRepository.findNextBookings(any(), any())).thenReturn(List.of());
+        when(commentRepository.findByItemIn(any())).thenReturn(List.of());
+
+        List<ItemWBookingsDto> resultList = itemService.getAllItems(owner.getId(), null, null, null);
+
+        assertEquals(1001, resultList.size());
+        assertEquals(1001, resultList.get(1000).getId());
+        verify(bookingRepository, times(2)).findLastBookings(any(), any());
+        verify(bookingRepository).findNextBookings(eq(List.of(1001)), any());
+        verify(commentRepository, times(2)).findByItemIn(any());
+    }
+
     @Test
     void getAllItemsTestFail() throws Exception {
         when(userRepository.existsById(anyInt())).thenReturn(true);
 
         try {
-            List<ItemWBookingsDto> resultList = itemService.getAllItems(owner.getId(), null, 5);
+            List<ItemWBookingsDto> resultList = itemService.getAllItems(owner.getId(), null, 5, null);
         } catch (Exception e) {
             assertEquals(ItemBadPageParamsException.class, e.getClass());
         }
@@ -459,6 +479,23 @@ public class ItemServiceUnitTest {
         assertEquals(localItemDto.getAvailable(), shortResult.getAvailable());
     }
 
+    @Test
+    void updateItemSaveFailsTest() throws Exception {
+        // findById отдает экземпляр из кэша: неудачное сохранение не должно его менять
+        when(userRepository.existsById(owner.getId())).thenReturn(true);
+        when(itemRepository.findById(item.getId())).thenReturn(Optional.of(item));
+        when(itemRepository.save(any())).thenThrow(new DataIntegrityViolationException("item_name"));
+
+        String name = item.getName();
+        assertThrows(DataIntegrityViolationException.class, () -> itemService.updateItem(ItemDto.builder()
+                .name("too long name".repeat(10))
+                .available(false)
+                .build(), item.getId(), owner.getId()));
+
+        assertEquals(name, item.getName());
+        assertEquals(true, item.getAvailable());
+    }
+
     @Test
     void updateItemTestFail() throws Exception {
         when(userRepository.existsById(booker.getId())).thenReturn(true);
@@ -494,11 +531,10 @@ public class ItemServiceUnitTest {
     @Test
     void searchItemsTest() throws Exception {
         when(userRepository.existsById(owner.getId())).thenReturn(true);
-        when(itemRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.ASC, "id"))))
-                .thenReturn(new PageImpl<>(List.of(item)));
+        when(itemRepository.search("item", PageRequest.of(0, 5)))
+                .thenReturn(new SliceImpl<>(List.of(item)));
 
-        List<ItemDto> resultList = itemService.searchItems("item", owner.getId(), 0, 5);
+        List<ItemDto> resultList = itemService.searchItems("item", owner.getId(), 0, 5, null, null, null);
 
         assertEquals(1, resultList.size());
         assertEquals(itemDto.getId(), resultList.get(0).getId());
@@ -510,9 +546,9 @@ public class ItemServiceUnitTest {
     @Test
     void searchItemsNullParamsTest() throws Exception {
         when(userRepository.existsById(owner.getId())).thenReturn(true);
-        when(itemRepository.search("item")).thenReturn(List.of(item));
+        when(itemRepository.search("item", Pageable.unpaged())).thenReturn(new SliceImpl<>(List.of(item)));
 
-        List<ItemDto> resultList = itemService.searchItems("item", owner.getId(), null, null);
+        List<ItemDto> resultList = itemService.searchItems("item", owner.getId(), null, null, null, null, null);
 
         assertEquals(1, resultList.size());
         assertEquals(itemDto.getId(), resultList.get(0).getId());
@@ -526,9 +562,37 @@ public class ItemServiceUnitTest {
         when(userRepository.existsById(owner.getId())).thenReturn(true);
 
         try {
-            List<ItemDto> resultList = itemService.searchItems("item", owner.getId(), null, 5);
+            List<ItemDto> resultList = itemService.searchItems("item", owner.getId(), null, 5, null, null, null);
         } catch (Exception e) {
             assertEquals(ItemBadPageParamsException.class, e.getClass());
         }
     }
+
+    @Test
+    void suggestItemsTest() throws Exception {
+        when(userRepository.existsById(anyInt())).thenReturn(true);
+        when(itemRepository.save(any())).thenReturn(item);
+
+        itemService.addItem(itemDto, 4);
+
+        List<MinItemDto> resultList = itemService.suggestItems("ITEM n", 4, null);
+        assertEquals(1, resultList.size());
+        assertEquals(item.getId(), resultList.get(0).getId());
+        assertEquals(item.getName(), resultList.get(0).getName());
+
+        assertEquals(0, itemService.suggestItems("name", 4, 5).size());
+        assertEquals(0, itemService.suggestItems("", 4, 5).size());
+    }
+
+    @Test
+    void suggestItemsTestFail() throws Exception {
+        when(userRepository.existsById(4)).thenReturn(true);
+        try {
+            itemService.suggestItems("item", 4, 0);
+        } catch (Exception e) {
+            assertEquals(ItemBadPageParamsException.class, e.getClass());
+        }
+
+        assertThrows(UserNotFoundException.class, () -> itemService.suggestItems("item", 5, 5));
+    }
 }
@@ -0,0 +1,154 @@
+package ru.practicum.shareit.item;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.shareit.item.dto.MinItemDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.storage.ItemRepository;
+import ru.practicum.shareit.item.storage.ItemSuggestStorage;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ItemSuggestStorageTest {
+    ItemRepository itemRepository = mock(ItemRepository.class);
+
+    private Item item(int id, String name, boolean available) {
+        return Item.builder()
+                .id(id)
+                .name(name)
+                .description("description")
+                .available(available)
+                .owner(1)
+                .build();
+    }
+
+    private List<Integer> ids(List<MinItemDto> items) {
+        return items.stream()
+                .map(MinItemDto::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void suggestTest() throws Exception {
+        when(itemRepository.findByIdGreaterThanOrderById(eq(0), any()))
+                .thenReturn(List.of(item(1, "Дрель", true),
+                        item(2, "Дрель ударная", true),
+                        item(3, "Домкрат", true),
+                        item(4, "Дрель старая", false)));
+
+        ItemSuggestStorage storage = new ItemSuggestStorage(itemRepository, 100);
+        storage.rebuild();
+
+        assertEquals(3, storage.size());
+        assertEquals(List.of(1, 2), ids(storage.suggest("дР", 10)));
+        assertEquals(List.of(3, 1, 2), ids(storage.suggest("д", 10)));
+        assertEquals(List.of(3), ids(storage.suggest("д", 1)));
+        assertTrue(storage.suggest("пила", 10).isEmpty());
+
+        // переименование, отключение доступности и удаление
+        storage.onSave(item(3, "Пила", true));
+        storage.onSave(item(1, "Дрель", false));
+        storage.onDelete(2);
+        storage.onSave(item(4, "Дрель старая", true));
+
+        assertEquals(List.of(4), ids(storage.suggest("дрель", 10)));
+        assertEquals(List.of(3), ids(storage.suggest("пил", 10)));
+        assertEquals(2, storage.size());
+        verify(itemRepository, never()).suggest(any(), any());
+    }
+
+    @Test
+    void suggestOverLimitTest() throws Exception {
+        when(itemRepository.findByIdGreaterThanOrderById(eq(0), any()))
+                .thenReturn(List.of(item(1, "Дрель", true),
+                        item(2, "Домкрат", true),
+                        item(3, "Пила", true)));
+        when(itemRepository.suggest(eq("д"), any()))
+                .thenReturn(List.of(new MinItemDto(2, "Домкрат"), new MinItemDto(1, "Дрель")));
+
+        ItemSuggestStorage storage = new ItemSuggestStorage(itemRepository, 2);
+        storage.rebuild();
+
+        assertEquals(2, storage.size());
+        assertFalse(storage.isComplete());
+        assertEquals(List.of(2, 1), ids(storage.suggest("Д", 10)));
+        verify(itemRepository).suggest(eq("д"), any());
+
+        // не поместившаяся вещь удалена - подсказки снова полные
+        storage.onDelete(3);
+        assertTrue(storage.isComplete());
+        assertEquals(List.of(2, 1), ids(storage.suggest("Д", 10)));
+        verify(itemRepository).suggest(eq("д"), any());
+
+        // место освободилось: измененная вещь сверх ограничения помещается
+        storage.onSave(item(4, "Пила", true));
+        assertFalse(storage.isComplete());
+        storage.onSave(item(2, "Домкрат", false));
+        assertFalse(storage.isComplete());
+        storage.onSave(item(4, "Пила", true));
+        assertTrue(storage.isComplete());
+        assertEquals(List.of(4), ids(storage.suggest("п", 10)));
+    }
+
+    @Test
+    void suggestOverLimitEscapesWildcardsTest() throws Exception {
+        when(itemRepository.findByIdGreaterThanOrderById(eq(0), any()))
+                .thenReturn(List.of(item(1, "50% скидка", true), item(2, "500 пакетов", true)));
+
+        ItemSuggestStorage storage = new ItemSuggestStorage(itemRepository, 1);
+        storage.rebuild();
+
+        storage.suggest("50%_\\", 10);
+        verify(itemRepository).suggest(eq("50\\%\\_\\\\"), any());
+    }
+
+    @Test
+    void rebuildKeepsConcurrentChangesTest() throws Exception {
+        ItemSuggestStorage storage = new ItemSuggestStorage(itemRepository, 100);
+        // пока идет чтение из БД, вещь 1 переименована, а вещь 2 удалена
+        when(itemRepository.findByIdGreaterThanOrderById(eq(0), any())).thenAnswer(invocation -> {
+            storage.onSave(item(1, "Пила", true));
+            storage.onDelete(2);
+            return List.of(item(3, "Дрель", true), item(2, "Домкрат", true), item(1, "Дрель старая", true));
+        });
+
+        storage.rebuild();
+
+        assertEquals(2, storage.size());
+        assertEquals(List.of(3), ids(storage.suggest("д", 10)));
+        assertEquals(List.of(1), ids(storage.suggest("п", 10)));
+    }
+
+    @Test
+    void suggestOverflowLimitTest() throws Exception {
+        when(itemRepository.findByIdGreaterThanOrderById(eq(0), any()))
+                .thenReturn(List.of(item(1, "Дрель", true),
+                        item(2, "Домкрат", true),
+                        item(3, "Пила", true)))
+                .thenReturn(List.of(item(1, "Дрель", true)));
+
+        // в памяти одна запись и не больше одного id не поместившихся вещей
+        ItemSuggestStorage storage = new ItemSuggestStorage(itemRepository, 1);
+        storage.rebuild();
+        assertFalse(storage.isComplete());
+
+        // вещь 3 не запомнена, поэтому после удаления вещи 2 полнота неизвестна
+        storage.onDelete(2);
+        assertFalse(storage.isComplete());
+
+        // перестроение снова дает полные подсказки
+        storage.rebuild();
+        assertTrue(storage.isComplete());
+        assertEquals(List.of(1), ids(storage.suggest("д", 10)));
+    }
+}
@@ -14,6 +14,7 @@ import ru.practicum.shareit.request.exceptions.ItemRequestBadPageParams;
 import ru.practicum.shareit.request.exceptions.ItemRequestNotFoundException;
 import ru.practicum.shareit.request.service.ItemRequestService;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
+import ru.practicum.shareit.util.PageCursor;
 
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
@@ -23,9 +24,11 @@ import java.util.List;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -128,7 +131,7 @@ public class RequestControllerTest {
 
     @Test
     void getOtherUsersRequestsTest() throws Exception {
-        when(service.getOtherUsersRequests(anyInt(), anyInt(), anyInt())).thenReturn(List.of(output));
+        when(service.getOtherUsersRequests(anyInt(), anyInt(), anyInt(), any())).thenReturn(List.of(output));
 
         mvc.perform(get("/requests/all")
                         .header("X-Sharer-User-Id", 1)
@@ -140,7 +143,7 @@ public class RequestControllerTest {
 
     @Test
     void getOtherUsersRequestsTestFail() throws Exception {
-        when(service.getOtherUsersRequests(anyInt(), any(), anyInt())).thenThrow(new ItemRequestBadPageParams(""));
+        when(service.getOtherUsersRequests(anyInt(), any(), anyInt(), any())).thenThrow(new ItemRequestBadPageParams(""));
 
         mvc.perform(get("/requests/all")
                         .header("X-Sharer-User-Id", 1)
@@ -148,4 +151,42 @@ public class RequestControllerTest {
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void getOtherUsersRequestsCursorTest() throws Exception {
+        when(service.getOtherUsersRequests(anyInt(), any(), eq(1), eq(""))).thenReturn(List.of(output));
+
+        mvc.perform(get("/requests/all")
+                        .header("X-Sharer-User-Id", 1)
+                        .param("cursor", "")
+                        .param("size", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(output.getId())))
+                .andExpect(header().string(PageCursor.HEADER,
+                        new PageCursor(output.getCreated(), output.getId()).encode()));
+
+        // неполная страница - последняя, курсора нет
+        mvc.perform(get("/requests/all")
+                        .header("X-Sharer-User-Id", 1)
+                        .param("cursor", "")
+                        .param("size", "2")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(PageCursor.HEADER));
+    }
+
+    @Test
+    void getOtherUsersRequestsCursorTestFail() throws Exception {
+        // параметры страницы проверяет сервис
+        when(service.getOtherUsersRequests(1, 0, 5, "")).thenThrow(new ItemRequestBadPageParams(""));
+
+        mvc.perform(get("/requests/all")
+                        .header("X-Sharer-User-Id", 1)
+                        .param("cursor", "")
+                        .param("from", "0")
+                        .param("size", "5")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
 }
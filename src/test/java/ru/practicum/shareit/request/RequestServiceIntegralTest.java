@@ -12,8 +12,10 @@ import ru.practicum.shareit.request.dto.ItemRequestInputDto;
 import ru.practicum.shareit.request.service.ItemRequestService;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.service.UserService;
+import ru.practicum.shareit.util.PageCursor;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -84,7 +86,7 @@ public class RequestServiceIntegralTest {
         item.setId(itemService.addItem(item, itemOwner.getId()).getId());
         requestId2 = requestService.addRequest(itemOwnersRequest, itemOwner.getId()).getId();
 
-        List<ItemRequestDto> result = requestService.getOtherUsersRequests(requester.getId(), 0, 5);
+        List<ItemRequestDto> result = requestService.getOtherUsersRequests(requester.getId(), 0, 5, null);
 
         assertEquals(1, result.size());
         assertEquals(requestId2, result.get(0).getId());
@@ -92,4 +94,61 @@ public class RequestServiceIntegralTest {
         assertEquals(itemOwnersRequest.getCreated(), result.get(0).getCreated());
         assertEquals(0, result.get(0).getItems().size());
     }
+
+    @Test
+    void getAuthorRequestsItemsGroupingTest() throws Exception {
+        itemOwner.setId(userService.addUser(itemOwner).getId());
+        requester.setId(userService.addUser(requester).getId());
+
+        requestId1 = requestService.addRequest(request, requester.getId()).getId();
+        requestId2 = requestService.addRequest(
+                new ItemRequestInputDto("second request", LocalDateTime.now().plusMinutes(1)),
+                requester.getId()).getId();
+
+        // на первый запрос отвечают две вещи, на второй - одна
+        for (int requestId : List.of(requestId1, requestId2, requestId1)) {
+            itemService.addItem(ItemDto.builder()
+                    .name("item for " + requestId)
+                    .description("item description")
+                    .available(true)
+                    .requestId(requestId)
+                    .build(), itemOwner.getId());
+        }
+
+        List<ItemRequestDto> result = requestService.getAuthorRequests(requester.getId());
+
+        assertEquals(2, result.size());
+        assertEquals(requestId2, result.get(0).getId());
+        assertEquals(1, result.get(0).getItems().size());
+        assertEquals(requestId1, result.get(1).getId());
+        assertEquals(2, result.get(1).getItems().size());
+        for (ItemDto itemDto : result.get(1).getItems()) {
+            assertEquals(requestId1, itemDto.getRequestId());
+        }
+    }
+
+    @Test
+    void getOtherUsersRequestsAfterTest() throws Exception {
+        itemOwner.setId(userService.addUser(itemOwner).getId());
+        requester.setId(userService.addUser(requester).getId());
+
+        // свой запрос пользователя не должен попадать в выдачу и сокращать страницы
+        requestService.addRequest(request, requester.getId());
+        LocalDateTime created = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        for (int i = 0; i < 3; i++) {
+            requestService.addRequest(new ItemRequestInputDto("request " + i, created), itemOwner.getId());
+        }
+
+        List<ItemRequestDto> firstPage = requestService.getOtherUsersRequests(requester.getId(), null, 2, "");
+        assertEquals(2, firstPage.size());
+
+        List<ItemRequestDto> secondPage = requestService.getOtherUsersRequests(requester.getId(), null, 2,
+                new PageCursor(firstPage.get(1).getCreated(), firstPage.get(1).getId()).encode());
+        assertEquals(1, secondPage.size());
+
+        // одинаковое время создания: порядок по убыванию id
+        assertEquals("request 2", firstPage.get(0).getDescription());
+        assertEquals("request 1", firstPage.get(1).getDescription());
+        assertEquals("request 0", secondPage.get(0).getDescription());
+    }
 }
@@ -1,9 +1,8 @@
 package ru.practicum.shareit.request;
 
 import org.junit.jupiter.api.Test;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Pageable;
 import ru.practicum.shareit.item.dto.ItemDtoMapper;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.item.storage.ItemRepository;
@@ -17,7 +16,9 @@ import ru.practicum.shareit.request.service.ItemRequestService;
 import ru.practicum.shareit.request.service.ItemRequestServiceImpl;
 import ru.practicum.shareit.request.storage.ItemRequestRepository;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
+import ru.practicum.shareit.user.storage.UserIdIndex;
 import ru.practicum.shareit.user.storage.UserRepository;
+import ru.practicum.shareit.util.PageCursor;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -34,7 +35,7 @@ public class RequestServiceUnitTest {
     UserRepository userRepository = mock(UserRepository.class);
     ItemRepository itemRepository = mock(ItemRepository.class);
     ItemRequestService requestService =
-            new ItemRequestServiceImpl(itemRequestRepository, userRepository, itemRepository);
+            new ItemRequestServiceImpl(itemRequestRepository, new UserIdIndex(userRepository), itemRepository);
 
     Item item = Item.builder()
             .id(3)
@@ -118,11 +119,12 @@ public class RequestServiceUnitTest {
         when(userRepository.existsById(any())).thenReturn(true);
         when(itemRequestRepository.findByAuthorOrderByCreatedDesc(semiResult.getAuthor()))
                 .thenReturn(List.of(semiResult));
-        when(itemRepository.findByRequestIdOrderById(semiResult.getId())).thenReturn(List.of(item));
+        when(itemRepository.findByRequestIdInOrderById(List.of(semiResult.getId()))).thenReturn(List.of(item));
 
         List<ItemRequestDto> resultList = requestService.getAuthorRequests(semiResult.getAuthor());
 
         assertEquals(1, resultList.size());
+        assertEquals(output.getItems(), resultList.get(0).getItems());
         assertEquals(output.getId(), resultList.get(0).getId());
         assertEquals(output.getDescription(), resultList.get(0).getDescription());
         assertEquals(output.getCreated(), resultList.get(0).getCreated());
@@ -142,15 +144,15 @@ public class RequestServiceUnitTest {
     @Test
     void getOtherUsersRequestsTest() throws Exception {
         when(userRepository.existsById(any())).thenReturn(true);
-        when(itemRequestRepository
-                .findAll(PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "created"))))
-                .thenReturn(new PageImpl<>(List.of(semiResult)));
-        when(itemRepository.findByRequestIdOrderById(anyInt())).thenReturn(List.of(item));
+        when(itemRequestRepository.findOtherUsersRequests(semiResult.getAuthor() + 1, PageRequest.of(0, 5)))
+                .thenReturn(List.of(semiResult));
+        when(itemRepository.findByRequestIdInOrderById(List.of(semiResult.getId()))).thenReturn(List.of(item));
 
         List<ItemRequestDto> resultList
-                = requestService.getOtherUsersRequests(semiResult.getAuthor() + 1, 0, 5);
+                = requestService.getOtherUsersRequests(semiResult.getAuthor() + 1, 0, 5, null);
 
         assertEquals(1, resultList.size());
+        assertEquals(output.getItems(), resultList.get(0).getItems());
         assertEquals(output.getId(), resultList.get(0).getId());
         assertEquals(output.getDescription(), resultList.get(0).getDescription());
         assertEquals(output.getCreated(), resultList.get(0).getCreated());
@@ -159,13 +161,15 @@ public class RequestServiceUnitTest {
     @Test
     void getOtherUsersRequestsNullPageParamsTest() throws Exception {
         when(userRepository.existsById(any())).thenReturn(true);
-        when(itemRequestRepository.findByAuthorNotInOrderByCreatedDesc(any())).thenReturn(List.of(semiResult));
-        when(itemRepository.findByRequestIdOrderById(anyInt())).thenReturn(List.of(item));
+        when(itemRequestRepository.findOtherUsersRequests(semiResult.getAuthor() + 1, Pageable.unpaged()))
+                .thenReturn(List.of(semiResult));
+        when(itemRepository.findByRequestIdInOrderById(List.of(semiResult.getId()))).thenReturn(List.of(item));
 
         List<ItemRequestDto> resultList
-                = requestService.getOtherUsersRequests(semiResult.getAuthor() + 1, null, null);
+                = requestService.getOtherUsersRequests(semiResult.getAuthor() + 1, null, null, null);
 
         assertEquals(1, resultList.size());
+        assertEquals(output.getItems(), resultList.get(0).getItems());
         assertEquals(output.getId(), resultList.get(0).getId());
         assertEquals(output.getDescription(), resultList.get(0).getDescription());
         assertEquals(output.getCreated(), resultList.get(0).getCreated());
@@ -177,7 +181,35 @@ public class RequestServiceUnitTest {
 
         try {
             List<ItemRequestDto> resultList
-                    = requestService.getOtherUsersRequests(semiResult.getAuthor() + 1, null, 5);
+                    = requestService.getOtherUsersRequests(semiResult.getAuthor() + 1, null, 5, null);
+        } catch (Exception e) {
+            assertEquals(ItemRequestBadPageParams.class, e.getClass());
+        }
+    }
+
+    @Test
+    void getOtherUsersRequestsAfterTest() throws Exception {
+        when(userRepository.existsById(any())).thenReturn(true);
+        when(itemRequestRepository.findOtherUsersRequestsAfter(semiResult.getAuthor() + 1,
+                semiResult.getCreated(), semiResult.getId() + 1, PageRequest.of(0, 5)))
+                .thenReturn(List.of(semiResult));
+        when(itemRepository.findByRequestIdInOrderById(List.of(semiResult.getId()))).thenReturn(List.of(item));
+
+        String cursor = new PageCursor(semiResult.getCreated(), semiResult.getId() + 1).encode();
+        List<ItemRequestDto> resultList
+                = requestService.getOtherUsersRequests(semiResult.getAuthor() + 1, null, 5, cursor);
+
+        assertEquals(1, resultList.size());
+        assertEquals(output.getId(), resultList.get(0).getId());
+        assertEquals(output.getItems(), resultList.get(0).getItems());
+    }
+
+    @Test
+    void getOtherUsersRequestsAfterTestFail() throws Exception {
+        when(userRepository.existsById(any())).thenReturn(true);
+
+        try {
+            requestService.getOtherUsersRequests(semiResult.getAuthor() + 1, null, 5, "not a cursor");
         } catch (Exception e) {
             assertEquals(ItemRequestBadPageParams.class, e.getClass());
         }
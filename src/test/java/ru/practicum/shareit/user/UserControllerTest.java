@@ -7,11 +7,14 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.exceptions.UserBadPageParamsException;
 import ru.practicum.shareit.user.exceptions.UserDataConflictException;
 import ru.practicum.shareit.user.exceptions.UserIncompleteDataException;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
 import ru.practicum.shareit.user.service.UserService;
+import ru.practicum.shareit.util.PageCursor;
 
 import java.nio.charset.StandardCharsets;
 import java.util.List;
@@ -22,11 +25,15 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = UserController.class)
@@ -155,13 +162,103 @@ public class UserControllerTest {
 
     @Test
     void getAllUsers() throws Exception {
-        when(userService.getAllUsers()).thenReturn(List.of(userDto));
+        when(userService.streamAllUsers()).thenReturn(action -> List.of(userDto).forEach(action));
 
-        mvc.perform(get("/users")
+        // весь список выдается потоком в виде массива JSON
+        MvcResult result = mvc.perform(get("/users")
                         .characterEncoding(StandardCharsets.UTF_8)
                         .contentType(MediaType.APPLICATION_JSON)
                         .accept(MediaType.APPLICATION_JSON))
-                .andExpect(status().isOk());
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(1)))
+                .andExpect(jsonPath("$[0].id", is(userDto.getId())));
+    }
+
+    @Test
+    void getAllUsersPaged() throws Exception {
+        when(userService.getAllUsers(0, 1, null)).thenReturn(List.of(userDto));
+
+        mvc.perform(get("/users")
+                        .param("from", "0")
+                        .param("size", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(userDto.getId())))
+                .andExpect(header().doesNotExist(PageCursor.HEADER));
+    }
+
+    @Test
+    void getAllUsersCursor() throws Exception {
+        when(userService.getAllUsers(null, 1, "")).thenReturn(List.of(userDto));
+
+        mvc.perform(get("/users")
+                        .param("cursor", "")
+                        .param("size", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(userDto.getId())))
+                .andExpect(header().string(PageCursor.HEADER, new PageCursor(userDto.getId()).encode()));
+    }
+
+    @Test
+    void getAllUsersPagedFail() throws Exception {
+        // параметры страницы проверяет сервис
+        when(userService.getAllUsers(null, 0, null)).thenThrow(new UserBadPageParamsException(""));
+        when(userService.getAllUsers(0, 1, "")).thenThrow(new UserBadPageParamsException(""));
+        when(userService.getAllUsers(0, null, null)).thenThrow(new UserBadPageParamsException("from=0 size=null"));
+
+        mvc.perform(get("/users")
+                        .param("from", "0")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", is("from=0 size=null")));
+
+        mvc.perform(get("/users")
+                        .param("size", "0")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        mvc.perform(get("/users")
+                        .param("from", "0")
+                        .param("size", "1")
+                        .param("cursor", "")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamAllUsers() throws Exception {
+        UserDto another = UserDto.builder()
+                .id(2)
+                .name("another")
+                .email("another@user.com")
+                .build();
+        when(userService.streamAllUsers()).thenReturn(action -> List.of(userDto, another).forEach(action));
+
+        MvcResult result = mvc.perform(get("/users")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(mapper.writeValueAsString(userDto) + "\n"
+                        + mapper.writeValueAsString(another) + "\n"));
+
+        // без Accept - массив JSON
+        result = mvc.perform(get("/users"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().string("[" + mapper.writeValueAsString(userDto) + ","
+                        + mapper.writeValueAsString(another) + "]"));
     }
 
     @Test
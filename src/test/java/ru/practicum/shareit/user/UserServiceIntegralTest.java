@@ -4,6 +4,8 @@ import lombok.RequiredArgsConstructor;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.user.dto.UserDto;
@@ -12,8 +14,11 @@ import ru.practicum.shareit.user.service.UserService;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 @Transactional
 @Rollback(false)
@@ -25,6 +30,7 @@ public class UserServiceIntegralTest {
 
     private final EntityManager em;
     private final UserService service;
+    private final CacheManager cacheManager;
 
     UserDto userDto1 = UserDto.builder()
             .id(1)
@@ -71,4 +77,36 @@ public class UserServiceIntegralTest {
         assertEquals(userDto2.getName(), result.getName());
         assertEquals(userDto2.getEmail(), result.getEmail());
     }
+
+    @Test
+    void getUserCacheTest() throws Exception {
+        UserDto saved = service.addUser(UserDto.builder()
+                .name("cached")
+                .email("cached@ya.ru")
+                .build());
+        CaffeineCache cache = (CaffeineCache) cacheManager.getCache("users");
+        long hits = cache.getNativeCache().stats().hitCount();
+
+        service.getUser(saved.getId());
+        service.getUser(saved.getId());
+        assertEquals(hits + 1, cache.getNativeCache().stats().hitCount());
+
+        // изменение пользователя сбрасывает его запись в кэше
+        service.updateUser(UserDto.builder().name("renamed").build(), saved.getId());
+        assertNull(cache.get(saved.getId()));
+        assertEquals("renamed", service.getUser(saved.getId()).getName());
+    }
+
+    @Test
+    void streamAllUsersTest() throws Exception {
+        service.addUser(UserDto.builder()
+                .name("streamed")
+                .email("streamed@ya.ru")
+                .build());
+
+        List<UserDto> streamed = new ArrayList<>();
+        service.streamAllUsers().forEach(streamed::add);
+
+        assertEquals(service.getAllUsers(0, 1000, null), streamed);
+    }
 }
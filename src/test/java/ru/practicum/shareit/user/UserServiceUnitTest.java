@@ -2,27 +2,37 @@ package ru.practicum.shareit.user;
 
 
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.dto.UserDtoMapper;
+import ru.practicum.shareit.user.exceptions.UserBadPageParamsException;
 import ru.practicum.shareit.user.exceptions.UserIncompleteDataException;
 import ru.practicum.shareit.user.exceptions.UserNotFoundException;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.service.UserService;
 import ru.practicum.shareit.user.service.UserServiceImpl;
+import ru.practicum.shareit.user.storage.UserIdIndex;
 import ru.practicum.shareit.user.storage.UserRepository;
+import ru.practicum.shareit.util.PageCursor;
 
 import java.util.List;
 import java.util.Optional;
 
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class UserServiceUnitTest {
     UserRepository userRepository = mock(UserRepository.class);
-    UserService userService = new UserServiceImpl(userRepository);
+    UserIdIndex userIdIndex = new UserIdIndex(userRepository);
+    UserService userService = new UserServiceImpl(userRepository, userIdIndex, mock(TransactionTemplate.class));
 
     UserDto userDto1 = UserDto.builder()
             .id(1)
@@ -126,9 +136,9 @@ public class UserServiceUnitTest {
 
     @Test
     void getAllUsersTest() throws Exception {
-        when(userRepository.findAll()).thenReturn(List.of(user1, user2));
+        when(userRepository.findAllByOrderById(PageRequest.of(0, 10))).thenReturn(List.of(user1, user2));
 
-        List<UserDto> result = userService.getAllUsers();
+        List<UserDto> result = userService.getAllUsers(0, 10, null);
 
         assertEquals(2, result.size());
         assertEquals(userDto1.getName(), result.get(0).getName());
@@ -137,13 +147,36 @@ public class UserServiceUnitTest {
 
     @Test
     void getAllUsersTestEmpty() throws Exception {
-        when(userRepository.findAll()).thenReturn(List.of());
+        when(userRepository.findAllByOrderById(PageRequest.of(0, 10))).thenReturn(List.of());
 
-        List<UserDto> result = userService.getAllUsers();
+        List<UserDto> result = userService.getAllUsers(0, 10, null);
 
         assertEquals(0, result.size());
     }
 
+    @Test
+    void getAllUsersPagedTest() throws Exception {
+        when(userRepository.findAllByOrderById(PageRequest.of(0, 2))).thenReturn(List.of(user1, user2));
+        when(userRepository.findByIdGreaterThanOrderById(user2.getId(), PageRequest.of(0, 2)))
+                .thenReturn(List.of());
+
+        List<UserDto> result = userService.getAllUsers(0, 2, null);
+        assertEquals(2, result.size());
+        assertEquals(userDto2.getName(), result.get(1).getName());
+
+        result = userService.getAllUsers(null, 2, new PageCursor(user2.getId()).encode());
+        assertEquals(0, result.size());
+    }
+
+    @Test
+    void getAllUsersPagedTestFail() throws Exception {
+        try {
+            userService.getAllUsers(null, 5, null);
+        } catch (Exception e) {
+            assertEquals(UserBadPageParamsException.class, e.getClass());
+        }
+    }
+
     @Test
     void updateUserTest() throws Exception {
         UserDto localDto = UserDto.builder()
@@ -200,4 +233,28 @@ public class UserServiceUnitTest {
             assertEquals("Пользователь " + user1.getId() + " не найден", e.getMessage());
         }
     }
+
+    @Test
+    void userIdIndexTest() throws Exception {
+        when(userRepository.findAllIds()).thenReturn(List.of(1));
+        when(userRepository.save(UserDtoMapper.toUser(userDto2))).thenReturn(user2);
+        when(userRepository.existsById(3)).thenReturn(true);
+
+        userIdIndex.load();
+        userService.addUser(userDto2);
+
+        // загруженные и добавленные через сервис id проверяются без БД
+        assertTrue(userIdIndex.exists(1));
+        assertTrue(userIdIndex.exists(2));
+        verify(userRepository, never()).existsById(anyInt());
+
+        // id, которого нет в памяти, проверяется в БД и запоминается
+        assertTrue(userIdIndex.exists(3));
+        assertTrue(userIdIndex.exists(3));
+        verify(userRepository, times(1)).existsById(3);
+        assertFalse(userIdIndex.exists(4));
+
+        userService.deleteUser(2);
+        assertFalse(userIdIndex.contains(2));
+    }
 }
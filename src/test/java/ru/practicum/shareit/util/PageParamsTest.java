@@ -0,0 +1,82 @@
+package ru.practicum.shareit.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import ru.practicum.shareit.item.exceptions.ItemBadPageParamsException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PageParamsTest {
+    @Test
+    void cursorEncodeDecodeTest() throws Exception {
+        PageCursor cursor = new PageCursor(LocalDateTime.of(2100, 6, 29, 10, 0, 0, 123456000), 42);
+        assertEquals(cursor, PageCursor.decode(cursor.encode()));
+        assertEquals(new PageCursor(7), PageCursor.decode(new PageCursor(7).encode()));
+        assertNull(PageCursor.decode("not a cursor"));
+        assertNull(PageCursor.decode("bm90IGEgY3Vyc29y"));
+    }
+
+    @Test
+    void pageParamsTest() throws Exception {
+        PageParams params = PageParams.of(null, null, null, ItemBadPageParamsException::new);
+        assertTrue(params.isUnpaged());
+        assertTrue(params.toPageable().isUnpaged());
+
+        params = PageParams.of(2, 5, null, ItemBadPageParamsException::new);
+        assertFalse(params.isCursorMode());
+        assertEquals(PageRequest.of(2, 5), params.toPageable());
+
+        // пустой курсор - первая страница
+        params = PageParams.of(null, 5, "", ItemBadPageParamsException::new);
+        assertTrue(params.isCursorMode());
+        assertFalse(params.hasCursor());
+        assertEquals(PageRequest.of(0, 5), params.toPageable());
+
+        params = PageParams.of(null, 5, new PageCursor(3).encode(), ItemBadPageParamsException::new);
+        assertTrue(params.hasCursor());
+        assertEquals(3, params.getCursor().getId());
+        assertEquals(PageRequest.of(0, 5), params.toPageable());
+    }
+
+    @Test
+    void toResponseTest() throws Exception {
+        // курсор следующей страницы передается, только если страница заполнена
+        // и список запрошен в курсорном режиме
+        ResponseEntity<List<Integer>> response = PageCursor.toResponse(List.of(1, 2, 3, 4, 5), "", 5,
+                PageCursor::new);
+        assertEquals(List.of(1, 2, 3, 4, 5), response.getBody());
+        assertEquals(new PageCursor(5), PageCursor.decode(response.getHeaders().getFirst(PageCursor.HEADER)));
+
+        assertNull(PageCursor.toResponse(List.of(1, 2, 3, 4, 5), null, 5, PageCursor::new)
+                .getHeaders().getFirst(PageCursor.HEADER));
+        assertNull(PageCursor.toResponse(List.of(1, 2), "", 5, PageCursor::new)
+                .getHeaders().getFirst(PageCursor.HEADER));
+        assertNull(PageCursor.toResponse(List.of(1, 2), null, null, PageCursor::new)
+                .getHeaders().getFirst(PageCursor.HEADER));
+    }
+
+    @Test
+    void pageParamsTestFail() throws Exception {
+        assertThrows(ItemBadPageParamsException.class,
+                () -> PageParams.of(null, 5, null, ItemBadPageParamsException::new));
+        assertThrows(ItemBadPageParamsException.class,
+                () -> PageParams.of(-1, 5, null, ItemBadPageParamsException::new));
+        assertThrows(ItemBadPageParamsException.class,
+                () -> PageParams.of(0, 0, null, ItemBadPageParamsException::new));
+        // cursor несовместим с from и требует size
+        assertThrows(ItemBadPageParamsException.class,
+                () -> PageParams.of(0, 5, "", ItemBadPageParamsException::new));
+        assertThrows(ItemBadPageParamsException.class,
+                () -> PageParams.of(null, null, "", ItemBadPageParamsException::new));
+        assertThrows(ItemBadPageParamsException.class,
+                () -> PageParams.of(null, 5, "not a cursor", ItemBadPageParamsException::new));
+    }
+}